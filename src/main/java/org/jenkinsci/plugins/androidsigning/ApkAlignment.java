@@ -0,0 +1,174 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+
+/**
+ * Checks whether an APK is already aligned the way {@code zipalign -P <page KB> -f 4} aligns APKs, like
+ * {@code zipalign -c}, by reading only the ZIP central directory and the local file header of each uncompressed
+ * entry, without reading the entries' data.  The data of every uncompressed entry must start at a multiple of
+ * 4 bytes, and the data of every uncompressed native library at a multiple of the page size.
+ */
+final class ApkAlignment {
+
+    /**
+     * Checks every given APK in one call to the agent that owns the workspace.
+     */
+    static class Check extends MasterToSlaveFileCallable<List<String>> {
+
+        private static final long serialVersionUID = 1;
+
+        private final List<String> apks;
+        private final int alignment;
+        private final int pageAlignment;
+
+        Check(List<String> apks, int alignment, int pageAlignment) {
+            this.apks = apks;
+            this.alignment = alignment;
+            this.pageAlignment = pageAlignment;
+        }
+
+        /**
+         * @return for each APK, in the same order, null if the APK is aligned, or why it is not
+         */
+        @Override
+        public List<String> invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            List<String> misalignments = new ArrayList<>(apks.size());
+            for (String apk : apks) {
+                misalignments.add(misalignmentOf(new File(apk), alignment, pageAlignment));
+            }
+            return misalignments;
+        }
+    }
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_EOCD_COMMENT_SIZE = 0xffff;
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int STORED = 0;
+
+    private ApkAlignment() {
+    }
+
+    /**
+     * Reads the ZIP records with positional reads into heap buffers rather than a memory mapping, which would keep
+     * the file locked on Windows until the garbage collector unmaps it, so the caller can rename or delete the APK
+     * right away.
+     *
+     * @return null if the APK is aligned, or why it is not, including when it is not a ZIP file this check can read,
+     *         so zipalign handles, or reports, those APKs
+     */
+    static String misalignmentOf(File apk, int alignment, int pageAlignment) throws IOException {
+        try (FileChannel channel = FileChannel.open(apk.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            int tailSize = (int) Math.min(size, EOCD_SIZE + MAX_EOCD_COMMENT_SIZE);
+            long tailOffset = size - tailSize;
+            ByteBuffer tail = read(channel, tailOffset, tailSize);
+            int eocdInTail = findEndOfCentralDirectory(tail);
+            if (eocdInTail < 0) {
+                return "no ZIP end of central directory record";
+            }
+            long eocd = tailOffset + eocdInTail;
+            int entryCount = Short.toUnsignedInt(tail.getShort(eocdInTail + 10));
+            long centralDirectorySize = Integer.toUnsignedLong(tail.getInt(eocdInTail + 12));
+            long centralDirectoryOffset = Integer.toUnsignedLong(tail.getInt(eocdInTail + 16));
+            if (entryCount == 0xffff || centralDirectorySize == 0xffffffffL || centralDirectoryOffset == 0xffffffffL) {
+                return "ZIP64 archive";
+            }
+            if (centralDirectoryOffset + centralDirectorySize > eocd) {
+                return "malformed ZIP central directory";
+            }
+
+            ByteBuffer centralDirectory = read(channel, centralDirectoryOffset, (int) centralDirectorySize);
+            int limit = centralDirectory.limit();
+            ByteBuffer localHeader = ByteBuffer.allocate(LOCAL_FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            int header = 0;
+            for (int i = 0; i < entryCount; i++) {
+                if (header + CENTRAL_DIRECTORY_HEADER_SIZE > limit || centralDirectory.getInt(header) != CENTRAL_DIRECTORY_SIGNATURE) {
+                    return "malformed ZIP central directory";
+                }
+                int method = Short.toUnsignedInt(centralDirectory.getShort(header + 10));
+                int nameLength = Short.toUnsignedInt(centralDirectory.getShort(header + 28));
+                int extraLength = Short.toUnsignedInt(centralDirectory.getShort(header + 30));
+                int commentLength = Short.toUnsignedInt(centralDirectory.getShort(header + 32));
+                long localHeaderOffset = Integer.toUnsignedLong(centralDirectory.getInt(header + 42));
+                int next = header + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+                if (next > limit) {
+                    return "malformed ZIP central directory";
+                }
+                if (method != STORED) {
+                    header = next;
+                    continue;
+                }
+
+                String name = nameAt(centralDirectory, header + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength);
+                header = next;
+                if (localHeaderOffset + LOCAL_FILE_HEADER_SIZE > centralDirectoryOffset) {
+                    return "malformed ZIP local file header for entry " + name;
+                }
+                localHeader.clear();
+                readFully(channel, localHeader, localHeaderOffset);
+                if (localHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE) {
+                    return "malformed ZIP local file header for entry " + name;
+                }
+                long dataOffset = localHeaderOffset + LOCAL_FILE_HEADER_SIZE
+                    + Short.toUnsignedInt(localHeader.getShort(26))
+                    + Short.toUnsignedInt(localHeader.getShort(28));
+                int entryAlignment = pageAlignment > 0 && name.endsWith(".so") ? pageAlignment : alignment;
+                if (dataOffset % entryAlignment != 0) {
+                    return String.format("data of entry %s at offset %d is not aligned to %d bytes", name, dataOffset, entryAlignment);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, offset);
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("unexpected end of file at offset " + (offset + buffer.position()));
+            }
+        }
+        buffer.flip();
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        int size = tail.limit();
+        // the record ends with a comment of up to 65535 bytes
+        for (int eocd = size - EOCD_SIZE; eocd >= 0; eocd--) {
+            if (tail.getInt(eocd) == EOCD_SIGNATURE && eocd + EOCD_SIZE + Short.toUnsignedInt(tail.getShort(eocd + 20)) == size) {
+                return eocd;
+            }
+        }
+        return -1;
+    }
+
+    private static String nameAt(ByteBuffer zip, int offset, int length) {
+        byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = zip.get(offset + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+}
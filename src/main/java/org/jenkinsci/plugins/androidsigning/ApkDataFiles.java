@@ -0,0 +1,111 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.android.apksig.util.DataSink;
+import com.android.apksig.util.DataSinks;
+import com.android.apksig.util.DataSource;
+import com.android.apksig.util.DataSources;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * The apksig data sources and sink for the input and output APKs of one signing pass, opened the way an
+ * {@link ApkIoMode} says.  The output APK is truncated when opened.
+ */
+final class ApkDataFiles implements Closeable {
+
+    static ApkDataFiles open(ApkIoMode mode, File inputApk, File outputApk) throws IOException {
+        if (mode == null || mode == ApkIoMode.RANDOM_ACCESS_FILE) {
+            RandomAccessFile input = new RandomAccessFile(inputApk, "r");
+            try {
+                RandomAccessFile output = new RandomAccessFile(outputApk, "rw");
+                output.setLength(0);
+                return new ApkDataFiles(DataSources.asDataSource(input), DataSinks.asDataSink(output), DataSources.asDataSource(output), input, output);
+            }
+            catch (IOException | RuntimeException e) {
+                input.close();
+                throw e;
+            }
+        }
+        FileChannel input = FileChannel.open(inputApk.toPath(), StandardOpenOption.READ);
+        try {
+            DataSource inputSource;
+            long size = input.size();
+            if (mode == ApkIoMode.MEMORY_MAPPED && size <= Integer.MAX_VALUE) {
+                // the mapping stays valid after the channel closes and goes away when the buffer is collected
+                inputSource = DataSources.asDataSource(input.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            else {
+                // a mapped buffer cannot be larger than 2 GB
+                inputSource = DataSources.asDataSource(input);
+            }
+            FileChannel output = FileChannel.open(outputApk.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            return new ApkDataFiles(inputSource, new FileChannelDataSink(output), DataSources.asDataSource(output), input, output);
+        }
+        catch (IOException | RuntimeException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    final DataSource input;
+    final DataSink output;
+    /**
+     * Reads back the output APK, which apksig does to compute the signature digests.
+     */
+    final DataSource outputSource;
+    private final Closeable inputFile;
+    private final Closeable outputFile;
+
+    private ApkDataFiles(DataSource input, DataSink output, DataSource outputSource, Closeable inputFile, Closeable outputFile) {
+        this.input = input;
+        this.output = output;
+        this.outputSource = outputSource;
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            outputFile.close();
+        }
+        finally {
+            inputFile.close();
+        }
+    }
+
+    /**
+     * Writes sequentially from the start of the channel with positional writes, because apksig moves the
+     * channel's position when it reads the output back through {@link DataSources#asDataSource(FileChannel)}.
+     * Unlike apksig's {@link RandomAccessFile} sink, this writes direct buffers without copying them to the heap.
+     */
+    private static final class FileChannelDataSink implements DataSink {
+
+        private final FileChannel channel;
+        private long position;
+
+        FileChannelDataSink(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void consume(byte[] buf, int offset, int length) throws IOException {
+            consume(ByteBuffer.wrap(buf, offset, length));
+        }
+
+        @Override
+        public void consume(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                position += channel.write(buf, position);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.android.apksig.util.DataSink;
+import com.android.apksig.util.DataSource;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counts the bytes apksig reads and writes while signing one APK.  {@link #count(DataSource)} and
+ * {@link #count(DataSink)} wrap the data sources and sinks handed to {@link com.android.apksig.ApkSigner}, so the
+ * counts include every pass apksig makes over the input APK and over the output APK it reads back to compute
+ * signature digests.  apksig may read from several threads at once, hence the {@link LongAdder}s.
+ */
+class ApkIoCounters implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    void add(ApkIoCounters other) {
+        bytesRead.add(other.getBytesRead());
+        bytesWritten.add(other.getBytesWritten());
+    }
+
+    DataSource count(DataSource source) {
+        return new CountingDataSource(source);
+    }
+
+    DataSink count(DataSink sink) {
+        return new CountingDataSink(sink);
+    }
+
+    private class CountingDataSource implements DataSource {
+
+        private final DataSource source;
+
+        CountingDataSource(DataSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public long size() {
+            return source.size();
+        }
+
+        @Override
+        public void feed(long offset, long size, DataSink sink) throws IOException {
+            source.feed(offset, size, sink);
+            bytesRead.add(size);
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer(long offset, int size) throws IOException {
+            ByteBuffer buffer = source.getByteBuffer(offset, size);
+            bytesRead.add(size);
+            return buffer;
+        }
+
+        @Override
+        public void copyTo(long offset, int size, ByteBuffer dest) throws IOException {
+            source.copyTo(offset, size, dest);
+            bytesRead.add(size);
+        }
+
+        @Override
+        public DataSource slice(long offset, long size) {
+            return new CountingDataSource(source.slice(offset, size));
+        }
+    }
+
+    private class CountingDataSink implements DataSink {
+
+        private final DataSink sink;
+
+        CountingDataSink(DataSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void consume(byte[] buf, int offset, int length) throws IOException {
+            sink.consume(buf, offset, length);
+            bytesWritten.add(length);
+        }
+
+        @Override
+        public void consume(ByteBuffer buf) throws IOException {
+            int length = buf.remaining();
+            sink.consume(buf);
+            bytesWritten.add(length);
+        }
+    }
+}
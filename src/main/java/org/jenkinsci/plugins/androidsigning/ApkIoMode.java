@@ -0,0 +1,28 @@
+package org.jenkinsci.plugins.androidsigning;
+
+/**
+ * How the agent reads the APK to sign and writes the signed APK.  Every mode but {@link #MEMORY_MAPPED} reads the
+ * APK to sign through apksig's file channel data source, even {@link #RANDOM_ACCESS_FILE}, which wraps the file's
+ * channel.  The modes differ in the output: {@link #RANDOM_ACCESS_FILE} is apksig's default sink, which copies
+ * every buffer it writes into a heap array first, while {@link #FILE_CHANNEL} writes buffers to a file channel
+ * without copying them.  {@link #MEMORY_MAPPED} writes like {@link #FILE_CHANNEL} and also maps the APK to sign
+ * into memory, so apksig digests the APK's bytes without reading them into heap buffers, which matters on agents
+ * with small heaps that sign several large APKs at once.
+ */
+public enum ApkIoMode {
+
+    RANDOM_ACCESS_FILE,
+    FILE_CHANNEL,
+    MEMORY_MAPPED;
+
+    public String getDisplayName() {
+        switch (this) {
+            case FILE_CHANNEL:
+                return Messages.apkIoMode_fileChannel_displayName();
+            case MEMORY_MAPPED:
+                return Messages.apkIoMode_memoryMapped_displayName();
+            default:
+                return Messages.apkIoMode_randomAccessFile_displayName();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.StreamTaskListener;
+
+
+/**
+ * Runs one task per APK, optionally on a bounded thread pool.  When running concurrently, each task logs to its
+ * own buffer, which {@link #run(List, int, TaskListener)} copies to the given listener in the order of the tasks,
+ * so the log stays grouped per APK and the results stay in the same order as running the tasks sequentially.
+ * This class has no dependencies on the controller, so both the controller and agent-side callables use it.
+ */
+final class ApkTasks {
+
+    interface Task<T> {
+        T run(TaskListener listener) throws IOException, InterruptedException;
+    }
+
+    private ApkTasks() {
+    }
+
+    static <T> List<T> run(List<? extends Task<T>> tasks, int threads, TaskListener listener) throws IOException, InterruptedException {
+        return run(tasks, null, threads, listener);
+    }
+
+    /**
+     * Like {@link #run(List, int, TaskListener)}, but when running concurrently, start the tasks in descending order
+     * of the given APK sizes, so that a large APK does not start last and run alone while the other threads idle.
+     * The results and logs stay in the order of the tasks.
+     *
+     * @param sizes the size of each task's APK, in the order of the tasks, or null to start the tasks in order
+     */
+    static <T> List<T> run(List<? extends Task<T>> tasks, List<Long> sizes, int threads, TaskListener listener) throws IOException, InterruptedException {
+        List<T> results = new ArrayList<>(tasks.size());
+        threads = Math.min(threads, tasks.size());
+        if (threads <= 1) {
+            for (Task<T> task : tasks) {
+                results.add(task.run(listener));
+            }
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+            new NamingThreadFactory(new DaemonThreadFactory(), SignApksBuilder.class.getSimpleName()));
+        List<ByteArrayOutputStream> logs = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+        List<Future<T>> futures = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+        try {
+            for (int i : largestFirst(sizes, tasks.size())) {
+                Task<T> task = tasks.get(i);
+                ByteArrayOutputStream log = new ByteArrayOutputStream();
+                TaskListener taskListener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+                logs.set(i, log);
+                futures.set(i, executor.submit(() -> task.run(taskListener)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                T result;
+                try {
+                    result = futures.get(i).get();
+                }
+                catch (ExecutionException e) {
+                    logs.get(i).writeTo(listener.getLogger());
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    }
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+                logs.get(i).writeTo(listener.getLogger());
+                results.add(result);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * The indices of the given sizes in descending order of size, and in ascending order of index for equal sizes.
+     *
+     * @param sizes null for the indices in ascending order
+     */
+    static List<Integer> largestFirst(List<Long> sizes, int count) {
+        List<Integer> order = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            order.add(i);
+        }
+        if (sizes != null) {
+            order.sort(Comparator.comparing((Integer i) -> sizes.get(i)).reversed());
+        }
+        return order;
+    }
+}
@@ -0,0 +1,142 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import hudson.AbortException;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+
+/**
+ * Archives the artifacts of each signed APK as soon as the APK is signed, so uploads to a remote artifact manager
+ * overlap with signing the remaining APKs.  A single controller thread makes every archive call, because
+ * {@link jenkins.model.ArtifactManager} does not promise that concurrent calls on the same build are safe; the APKs
+ * submitted while an upload runs go together in the next call.  Once an upload fails, the queue skips the uploads
+ * that have not started, and {@link #awaitAll()} fails the step, so the step either archives every APK or fails.
+ */
+final class ArchiveQueue {
+
+    interface Archiver {
+        void archive(Map<String,String> artifacts) throws IOException, InterruptedException;
+    }
+
+    private final Archiver archiver;
+    private final ExecutorService executor;
+    private final TaskListener listener;
+    private final List<Future<?>> uploads = new ArrayList<>();
+    private final List<String> pendingDescriptions = new ArrayList<>();
+    private final Map<String,String> pendingArtifacts = new LinkedHashMap<>();
+    private final List<String> failures = new ArrayList<>();
+    private final Map<String,Throwable> errors = new LinkedHashMap<>();
+    private int skipped = 0;
+    private boolean failed = false;
+
+    ArchiveQueue(Archiver archiver, TaskListener listener) {
+        this.archiver = archiver;
+        this.executor = Executors.newSingleThreadExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), SignApksBuilder.class.getSimpleName() + ".archive"));
+        this.listener = listener;
+    }
+
+    /**
+     * Safe to call from any thread, e.g., the remoting thread that reports each APK the agent signs.
+     */
+    synchronized void submit(String description, Map<String,String> artifacts) {
+        pendingDescriptions.add(description);
+        pendingArtifacts.putAll(artifacts);
+        uploads.add(executor.submit(this::archivePending));
+    }
+
+    private void archivePending() {
+        List<String> descriptions;
+        Map<String,String> artifacts;
+        synchronized (this) {
+            if (pendingDescriptions.isEmpty()) {
+                // an earlier upload took them
+                return;
+            }
+            descriptions = new ArrayList<>(pendingDescriptions);
+            artifacts = new LinkedHashMap<>(pendingArtifacts);
+            pendingDescriptions.clear();
+            pendingArtifacts.clear();
+            if (failed) {
+                skipped += descriptions.size();
+                return;
+            }
+        }
+        try {
+            archiver.archive(artifacts);
+        }
+        catch (IOException | InterruptedException | RuntimeException e) {
+            synchronized (this) {
+                failed = true;
+                failures.addAll(descriptions);
+                errors.put(String.join(", ", descriptions), e);
+            }
+        }
+    }
+
+    /**
+     * Wait for every submitted upload to finish or be skipped.
+     *
+     * @throws AbortException if any upload failed
+     */
+    void awaitAll() throws IOException, InterruptedException {
+        waitForUploads();
+        synchronized (this) {
+            if (failures.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<String,Throwable> error : errors.entrySet()) {
+                listener.error("[SignApksBuilder] error archiving %s: %s", error.getKey(), error.getValue().getMessage());
+                error.getValue().printStackTrace(listener.getLogger());
+            }
+            String message = "failed to archive " + String.join(", ", failures);
+            if (skipped > 0) {
+                message += String.format(" and skipped archiving %d more APKs", skipped);
+            }
+            throw new AbortException(message);
+        }
+    }
+
+    /**
+     * Skip the uploads that have not started and wait for the running upload, without failing, e.g., because the
+     * step is already failing for another reason.
+     */
+    void abort() throws InterruptedException {
+        synchronized (this) {
+            failed = true;
+        }
+        waitForUploads();
+    }
+
+    private void waitForUploads() throws InterruptedException {
+        List<Future<?>> submitted;
+        synchronized (this) {
+            submitted = new ArrayList<>(uploads);
+        }
+        try {
+            for (Future<?> upload : submitted) {
+                try {
+                    upload.get();
+                }
+                catch (ExecutionException e) {
+                    // an upload only lets errors through
+                    throw (Error) e.getCause();
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+
+/**
+ * Replaces files so that concurrent readers of a destination see either the previous file or the complete new one,
+ * never part of one: write a temporary file in the destination's directory, then rename it onto the destination.
+ * A rename within one directory is atomic on the file systems Jenkins agents use, and a reader that already opened
+ * the previous file keeps reading it.
+ */
+final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * A new hidden path in the same directory as the given destination, so renaming it onto the destination does
+     * not cross file systems.
+     */
+    static Path tempSiblingOf(Path destination) {
+        return destination.resolveSibling("." + destination.getFileName() + "." + UUID.randomUUID() + ".tmp");
+    }
+
+    static void replace(Path temp, Path destination) throws IOException {
+        Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
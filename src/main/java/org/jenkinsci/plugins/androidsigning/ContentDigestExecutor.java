@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.android.apksig.util.RunnablesExecutor;
+import com.android.apksig.util.RunnablesProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Runs the jobs apksig computes the chunked v2 and v3 content digests of an APK with on a fixed number of threads:
+ * the signing thread plus pooled daemon threads.  apksig's default executor shares the common fork-join pool with
+ * everything else on the agent, which gives no control over how many cores one APK's digests use when several
+ * APKs are signed in parallel.
+ */
+final class ContentDigestExecutor implements RunnablesExecutor {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(job -> {
+        Thread thread = new Thread(job, "android-signing-digest-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static RunnablesExecutor forApk(long apkSize, int threads, long parallelThresholdBytes) {
+        return forApk(apkSize, threads, 1, parallelThresholdBytes);
+    }
+
+    /**
+     * @param threads the number of threads to compute digests with, or zero or less for an equal share of the
+     *                processors among the APKs signed concurrently
+     * @param concurrentApks the number of APKs the agent signs at the same time, including this one
+     * @param parallelThresholdBytes the size below which to compute digests on the signing thread only, because
+     *                               the digests of small APKs finish before the other threads would start
+     */
+    static RunnablesExecutor forApk(long apkSize, int threads, int concurrentApks, long parallelThresholdBytes) {
+        if (threads <= 0) {
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, concurrentApks));
+        }
+        if (threads == 1 || apkSize < parallelThresholdBytes) {
+            return RunnablesExecutor.SINGLE_THREADED;
+        }
+        return new ContentDigestExecutor(threads);
+    }
+
+    private final int threads;
+
+    private ContentDigestExecutor(int threads) {
+        this.threads = threads;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public void execute(RunnablesProvider provider) {
+        List<Future<?>> jobs = new ArrayList<>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            jobs.add(POOL.submit(provider.createRunnable()));
+        }
+        RuntimeException failure = null;
+        try {
+            provider.createRunnable().run();
+        }
+        catch (RuntimeException e) {
+            failure = e;
+        }
+        for (Future<?> job : jobs) {
+            try {
+                if (failure != null) {
+                    job.cancel(true);
+                }
+                job.get();
+            }
+            catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new IllegalStateException("interrupted while computing APK content digests", e);
+                }
+            }
+            catch (RuntimeException e) {
+                // cancelled after an earlier failure
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.ArgumentListBuilder;
+
+
+/**
+ * Resolves the environment variables a build's launcher adds to the processes it starts, such as the variables
+ * the Custom Tools plugin's launcher decoration injects.  The only way to get those is to start a process, so
+ * the result is cached for the rest of the run, keyed by the node, the launcher's decoration, and the
+ * environment of the step.
+ */
+final class EffectiveEnvironment {
+
+    private static final Map<String, EnvVars> SHELL_ENVS = new ConcurrentHashMap<>();
+
+    private EffectiveEnvironment() {
+    }
+
+    /**
+     * @param stepEnv the environment of the step, which distinguishes, e.g., Pipeline {@code withEnv} blocks
+     */
+    static EnvVars shellEnvFor(@NonNull Run<?, ?> run, @NonNull FilePath workspace, @NonNull Launcher launcher, @Nullable EnvVars stepEnv, @NonNull TaskListener listener) {
+        Computer computer = workspace.toComputer();
+        if (computer == null) {
+            return launchForShellEnv(workspace, launcher, listener);
+        }
+        String key = keyFor(run, computer, launcher, stepEnv);
+        EnvVars shellEnv = SHELL_ENVS.get(key);
+        if (shellEnv != null) {
+            listener.getLogger().println("[SignApksBuilder] using effective environment resolved earlier in this build");
+            return new EnvVars(shellEnv);
+        }
+        shellEnv = launchForShellEnv(workspace, launcher, listener);
+        SHELL_ENVS.put(key, shellEnv);
+        return new EnvVars(shellEnv);
+    }
+
+    static int cachedCount() {
+        return SHELL_ENVS.size();
+    }
+
+    private static String keyFor(Run<?, ?> run, Computer computer, Launcher launcher, EnvVars stepEnv) {
+        StringBuilder decoration = new StringBuilder();
+        Launcher inner = launcher;
+        while (inner instanceof Launcher.DecoratedLauncher) {
+            decoration.append(inner.getClass().getName()).append(',');
+            inner = ((Launcher.DecoratedLauncher) inner).getInner();
+        }
+        decoration.append(inner.getClass().getName());
+        return keyPrefixFor(run) + computer.getName() + "\n" + decoration + "\n" + digestOf(stepEnv);
+    }
+
+    private static String keyPrefixFor(Run<?, ?> run) {
+        return run.getExternalizableId() + "\n";
+    }
+
+    private static String digestOf(EnvVars env) {
+        if (env == null || env.isEmpty()) {
+            return "";
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Map.Entry<String, String> var : env.entrySet()) {
+                digest.update(var.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '=');
+                digest.update(String.valueOf(var.getValue()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static EnvVars launchForShellEnv(FilePath workspace, Launcher launcher, TaskListener listener) {
+        ArgumentListBuilder command = new ArgumentListBuilder().add("echo").addQuoted("resolving effective environment");
+        if (!launcher.isUnix()) {
+            command = command.toWindowsCommand();
+        }
+        // force the Custom Tools plugin to inject the custom tools env vars via its DecoratedLauncher
+        Launcher.ProcStarter getEffectiveEnv = launcher.launch().pwd(workspace).cmds(command);
+        try {
+            getEffectiveEnv.join();
+        }
+        catch (Exception e) {
+            listener.getLogger().println("[SignApksBuilder] error resolving effective script environment, but this does not necessarily fail your build:");
+            e.printStackTrace(listener.getLogger());
+        }
+        String[] envLines = getEffectiveEnv.envs();
+        EnvVars shellEnv = new EnvVars();
+        for (String envVar : envLines) {
+            shellEnv.addLine(envVar);
+        }
+        return shellEnv;
+    }
+
+    @Extension
+    public static class EvictOnCompletion extends RunListener<Run<?, ?>> {
+        @Override
+        public void onFinalized(Run<?, ?> run) {
+            String prefix = keyPrefixFor(run);
+            SHELL_ENVS.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+
+/**
+ * Runs the whole {@link ZipalignDiscovery zipalign search} on the agent that owns the workspace with
+ * {@link java.nio.file} checks, so the search costs one remoting call instead of a process launch per check.
+ * The search output comes back in the {@link Result} for the build log.
+ */
+class FindZipalignCallable extends MasterToSlaveFileCallable<FindZipalignCallable.Result> {
+
+    private static final long serialVersionUID = 1;
+
+    static class Result implements Serializable {
+
+        private static final long serialVersionUID = 1;
+
+        final String zipalign;
+        final boolean cached;
+        final String failure;
+        final String log;
+
+        Result(String zipalign, boolean cached, String failure, String log) {
+            this.zipalign = zipalign;
+            this.cached = cached;
+            this.failure = failure;
+            this.log = log;
+        }
+    }
+
+    private final String overrideZipalignPath;
+    private final String overrideAndroidHome;
+    private final String envZipalignPath;
+    private final String envAndroidHome;
+    private final String envPath;
+    private final String cachedZipalign;
+
+    /**
+     * @param cachedZipalign a zipalign path {@link ZipalignLocationCache} remembers for the same inputs, which this
+     *                       callable returns without searching if the file still exists, or null
+     */
+    FindZipalignCallable(String overrideZipalignPath, String overrideAndroidHome, String envZipalignPath, String envAndroidHome, String envPath, String cachedZipalign) {
+        this.overrideZipalignPath = overrideZipalignPath;
+        this.overrideAndroidHome = overrideAndroidHome;
+        this.envZipalignPath = envZipalignPath;
+        this.envAndroidHome = envAndroidHome;
+        this.envPath = envPath;
+        this.cachedZipalign = cachedZipalign;
+    }
+
+    @Override
+    public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        PrintStream logger = new PrintStream(log, true, StandardCharsets.UTF_8);
+
+        if (cachedZipalign != null) {
+            if (Files.isRegularFile(Paths.get(cachedZipalign))) {
+                logger.printf("[SignApksBuilder] using cached zipalign path %s%n", cachedZipalign);
+                return new Result(cachedZipalign, true, null, log.toString(StandardCharsets.UTF_8));
+            }
+            logger.printf("[SignApksBuilder] cached zipalign path %s no longer exists%n", cachedZipalign);
+        }
+
+        ZipalignDiscovery discovery = new ZipalignDiscovery(new NioProbe(), new FilePath(workspace), logger);
+        try {
+            FilePath zipalign = discovery.find(overrideZipalignPath, overrideAndroidHome, envZipalignPath, envAndroidHome, envPath);
+            return new Result(zipalign == null ? null : zipalign.getRemote(), false, null, log.toString(StandardCharsets.UTF_8));
+        }
+        catch (AbortException e) {
+            return new Result(null, false, e.getMessage(), log.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Checks local paths, so it only works where the {@link FilePath}s are local, i.e., on the agent.
+     */
+    static class NioProbe implements ZipalignDiscovery.Probe {
+
+        @Override
+        public boolean isDirectory(FilePath path) {
+            return Files.isDirectory(Paths.get(path.getRemote()));
+        }
+
+        @Override
+        public boolean isFile(FilePath path) {
+            return Files.isRegularFile(Paths.get(path.getRemote()));
+        }
+
+        @Override
+        public List<FilePath> listDirectories(FilePath parent) throws IOException {
+            List<FilePath> dirs = new ArrayList<>();
+            Path parentPath = Paths.get(parent.getRemote());
+            if (!Files.isDirectory(parentPath)) {
+                return dirs;
+            }
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(parentPath, Files::isDirectory)) {
+                for (Path child : children) {
+                    dirs.add(parent.child(child.getFileName().toString()));
+                }
+            }
+            return dirs;
+        }
+
+        @Override
+        public String pathSeparator() {
+            return File.pathSeparator;
+        }
+    }
+}
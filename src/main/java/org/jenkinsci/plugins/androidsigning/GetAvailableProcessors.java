@@ -0,0 +1,22 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.File;
+import java.io.IOException;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+
+/**
+ * Returns the number of processors the node reports, which {@code parallelSigningThreadsFor} uses when Parallel
+ * Signing Threads is 0.
+ */
+class GetAvailableProcessors extends MasterToSlaveFileCallable<Integer> {
+
+    private static final long serialVersionUID = 1;
+
+    @Override
+    public Integer invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
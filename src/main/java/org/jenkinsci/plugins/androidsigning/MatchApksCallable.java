@@ -0,0 +1,227 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+
+/**
+ * Matches the APKs to sign against all globs in one walk of the workspace on the agent that owns it, and returns the
+ * absolute path, size and modification time of each matched APK, instead of one
+ * {@link hudson.FilePath#list(String, String)} call and workspace scan per glob.  The walk skips directories no
+ * glob can match files in and excluded directories, e.g., the step's own output directory.  Globs are Ant patterns
+ * with Ant's default excludes, as {@link hudson.FilePath#list(String, String)} uses them.
+ */
+class MatchApksCallable extends MasterToSlaveFileCallable<MatchApksCallable.Result> {
+
+    private static final long serialVersionUID = 1;
+    private static final Logger LOGGER = Logger.getLogger(MatchApksCallable.class.getName());
+
+    static class MatchedApk implements Serializable {
+
+        private static final long serialVersionUID = 1;
+
+        /**
+         * Absolute path on the agent.
+         */
+        final String path;
+        final long size;
+        final long lastModified;
+
+        MatchedApk(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    static class Result implements Serializable {
+
+        private static final long serialVersionUID = 1;
+
+        /**
+         * Every APK any glob matches, once, in path order.
+         */
+        final List<MatchedApk> apks;
+        /**
+         * The number of APKs each glob matches, in the order of the globs.
+         */
+        final List<Integer> matchCounts;
+
+        Result(List<MatchedApk> apks, List<Integer> matchCounts) {
+            this.apks = apks;
+            this.matchCounts = matchCounts;
+        }
+    }
+
+    private final String[] globs;
+    private final String excludes;
+
+    /**
+     * @param globs each may hold several Ant patterns separated by spaces, like a {@link hudson.FilePath#list(String)} glob
+     * @param excludes comma separated Ant patterns
+     */
+    MatchApksCallable(String[] globs, String excludes) {
+        this.globs = globs;
+        this.excludes = excludes;
+    }
+
+    @Override
+    public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        List<List<String>> includePatterns = new ArrayList<>(globs.length);
+        for (String glob : globs) {
+            includePatterns.add(patterns(glob));
+        }
+        List<String> excludePatterns = new ArrayList<>(patterns(excludes));
+        for (String defaultExclude : DirectoryScanner.getDefaultExcludes()) {
+            excludePatterns.add(normalize(defaultExclude));
+        }
+
+        int[] matchCounts = new int[globs.length];
+        List<MatchedApk> apks = new ArrayList<>();
+        if (workspace.isDirectory()) {
+            Path root = workspace.toPath();
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (dir.equals(root)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String relPath = root.relativize(dir).toString();
+                    if (isExcludedDir(relPath, excludePatterns) || !mayMatchIn(relPath, includePatterns)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (!attrs.isRegularFile()) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    String relPath = root.relativize(file).toString();
+                    if (matchesAny(relPath, excludePatterns)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    boolean matched = false;
+                    for (int i = 0; i < includePatterns.size(); i++) {
+                        if (matchesAny(relPath, includePatterns.get(i))) {
+                            matchCounts[i]++;
+                            matched = true;
+                        }
+                    }
+                    if (matched) {
+                        apks.add(new MatchedApk(file.toAbsolutePath().toString(), attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    if (e instanceof FileSystemLoopException) {
+                        // a symbolic link to an ancestor directory
+                        return FileVisitResult.CONTINUE;
+                    }
+                    // like DirectoryScanner, skip what cannot be read, e.g., another user's directory, unless a
+                    // glob matches it as an APK to sign
+                    String relPath = root.relativize(file).toString();
+                    if (!matchesAny(relPath, excludePatterns)) {
+                        for (List<String> patterns : includePatterns) {
+                            if (matchesAny(relPath, patterns)) {
+                                throw e;
+                            }
+                        }
+                    }
+                    LOGGER.log(Level.FINE, "skipping unreadable path " + file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        apks.sort(Comparator.comparing(apk -> apk.path));
+        List<Integer> counts = new ArrayList<>(globs.length);
+        for (int count : matchCounts) {
+            counts.add(count);
+        }
+        return new Result(apks, counts);
+    }
+
+    /**
+     * Split the given Ant patterns and normalize them the way {@link DirectoryScanner} does.
+     */
+    private static List<String> patterns(String patterns) {
+        if (patterns == null || patterns.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> normalized = new ArrayList<>();
+        for (String pattern : Arrays.asList(patterns.trim().split("[,\\s]+"))) {
+            if (!pattern.isEmpty()) {
+                normalized.add(normalize(pattern));
+            }
+        }
+        return normalized;
+    }
+
+    private static String normalize(String pattern) {
+        pattern = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (pattern.endsWith(File.separator)) {
+            pattern += "**";
+        }
+        return pattern;
+    }
+
+    private static boolean matchesAny(String relPath, List<String> patterns) {
+        for (String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern, relPath, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean mayMatchIn(String relDir, List<List<String>> includePatterns) {
+        for (List<String> patterns : includePatterns) {
+            for (String pattern : patterns) {
+                if (SelectorUtils.matchPatternStart(pattern, relDir, true)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an exclude pattern excludes everything in the given directory, like {@code dir/**}.
+     */
+    private static boolean isExcludedDir(String relDir, List<String> excludePatterns) {
+        String allFiles = File.separator + "**";
+        for (String pattern : excludePatterns) {
+            if (pattern.endsWith(allFiles) && SelectorUtils.matchPath(pattern.substring(0, pattern.length() - allFiles.length()), relDir, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
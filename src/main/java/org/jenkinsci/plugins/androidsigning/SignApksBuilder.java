@@ -13,6 +13,11 @@
 package org.jenkinsci.plugins.androidsigning;
 
 import com.android.apksig.ApkSigner;
+import com.android.apksig.DefaultApkSignerEngine;
+import com.android.apksig.apk.ApkFormatException;
+import com.android.apksig.apk.ApkUtils;
+import com.android.apksig.apk.MinSdkVersionException;
+import com.android.apksig.util.DataSource;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
@@ -29,20 +34,21 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.GeneralSecurityException;
-import java.security.PrivateKey;
-import java.security.cert.Certificate;
-import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 
@@ -53,8 +59,11 @@ import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Computer;
 import hudson.model.Item;
 import hudson.model.ItemGroup;
+import hudson.model.Node;
 import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
@@ -66,6 +75,7 @@ import hudson.util.ArgumentListBuilder;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.ArtifactManager;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
 import jenkins.util.BuildListenerAdapter;
@@ -108,6 +118,25 @@ public class SignApksBuilder extends Builder implements SimpleBuildStep {
     private boolean archiveSignedApks = true;
     private boolean archiveUnsignedApks = false;
     private boolean skipZipalign = false;
+    private boolean internalZipalign = false;
+    private boolean searchZipalignWithLauncher = false;
+    private boolean skipAlignedApks = false;
+    private int nativeLibraryPageAlignmentKb = ZipalignTool.DEFAULT_PAGE_ALIGNMENT_KB;
+    private boolean parallelSigning = false;
+    private int parallelSigningThreads = 0;
+    private boolean cacheSignedApks = false;
+    private boolean pipelinedArchiving = false;
+    private int digestThreads = 0;
+    // null in configurations saved before this was configurable, which means the default; zero is a valid threshold
+    private Integer parallelDigestThresholdMb = SigningOptions.DEFAULT_PARALLEL_DIGEST_THRESHOLD_MB;
+    private V1Signing v1Signing = V1Signing.AUTO;
+    // null in configurations saved before these were configurable, which means true
+    private Boolean v2SigningEnabled = true;
+    private Boolean v3SigningEnabled = true;
+    private boolean v4SigningEnabled = false;
+    private int minSdkVersion = 0;
+    private int maxSdkVersion = 0;
+    private ApkIoMode apkIoMode = ApkIoMode.RANDOM_ACCESS_FILE;
 
     transient private List<Apk> entries;
 
@@ -221,6 +250,217 @@ public class SignApksBuilder extends Builder implements SimpleBuildStep {
         return skipZipalign;
     }
 
+    /**
+     * Skip the Android SDK's {@code zipalign} tool and rely on the alignment apksig applies to every APK it signs:
+     * apksig writes uncompressed entries at 4-byte boundaries and uncompressed native libraries at
+     * {@link #getNativeLibraryPageAlignmentKb() page} boundaries, the same as {@code zipalign -P <page KB> 4}.  This
+     * avoids the intermediate aligned APK and the need to install the Android build tools on the node.
+     */
+    @DataBoundSetter
+    public void setInternalZipalign(boolean x) {
+        internalZipalign = x;
+    }
+
+    public boolean getInternalZipalign() {
+        return internalZipalign;
+    }
+
+    /**
+     * Search for {@code zipalign} with {@code test}/{@code find} or {@code dir} processes the build's launcher starts,
+     * instead of with one file system call on the node.  This is only necessary when the launcher runs commands in a
+     * different file system than the node's, such as in a container, and {@code zipalign} only exists there.
+     */
+    @DataBoundSetter
+    public void setSearchZipalignWithLauncher(boolean x) {
+        searchZipalignWithLauncher = x;
+    }
+
+    public boolean getSearchZipalignWithLauncher() {
+        return searchZipalignWithLauncher;
+    }
+
+    /**
+     * Check whether each APK is already aligned, like {@code zipalign -c -P 16 4}, by reading only its ZIP headers,
+     * and sign the APKs that are as they are instead of launching {@code zipalign} to copy them.  This only applies
+     * when aligning with the Android SDK's {@code zipalign} tool.
+     */
+    @DataBoundSetter
+    public void setSkipAlignedApks(boolean x) {
+        skipAlignedApks = x;
+    }
+
+    public boolean getSkipAlignedApks() {
+        return skipAlignedApks;
+    }
+
+    /**
+     * The page size in KB, 4, 16 or 64, to align uncompressed native libraries to, so devices with that page size
+     * can map them directly from the installed APK.  This applies to {@code zipalign -P} and to
+     * {@link #getInternalZipalign() internal zipalign}, and the step verifies every signed APK against it.
+     */
+    @DataBoundSetter
+    public void setNativeLibraryPageAlignmentKb(int x) {
+        nativeLibraryPageAlignmentKb = x;
+    }
+
+    public int getNativeLibraryPageAlignmentKb() {
+        // zero in configurations saved before this was configurable
+        return nativeLibraryPageAlignmentKb == 0 ? ZipalignTool.DEFAULT_PAGE_ALIGNMENT_KB : nativeLibraryPageAlignmentKb;
+    }
+
+    @DataBoundSetter
+    public void setParallelSigning(boolean x) {
+        parallelSigning = x;
+    }
+
+    public boolean getParallelSigning() {
+        return parallelSigning;
+    }
+
+    /**
+     * The maximum number of APKs to align and sign concurrently when {@link #getParallelSigning() parallel signing}
+     * is enabled.  Zero or less means use the number of processors available on the node that owns the workspace.
+     */
+    @DataBoundSetter
+    public void setParallelSigningThreads(int x) {
+        parallelSigningThreads = Math.max(0, x);
+    }
+
+    public int getParallelSigningThreads() {
+        return parallelSigningThreads;
+    }
+
+    /**
+     * Archive the artifacts of each APK as soon as it is signed instead of after signing all APKs, so uploads to the
+     * artifact manager overlap with signing.  The step still fails if archiving any APK fails.
+     */
+    @DataBoundSetter
+    public void setPipelinedArchiving(boolean x) {
+        pipelinedArchiving = x;
+    }
+
+    public boolean getPipelinedArchiving() {
+        return pipelinedArchiving;
+    }
+
+    /**
+     * The number of threads to compute the v2 and v3 signature content digests of each APK with.  Zero or less
+     * means use the number of processors available on the node that owns the workspace.
+     */
+    @DataBoundSetter
+    public void setDigestThreads(int x) {
+        digestThreads = Math.max(0, x);
+    }
+
+    public int getDigestThreads() {
+        return digestThreads;
+    }
+
+    /**
+     * The size in MB below which an APK's content digests are computed on one thread regardless of
+     * {@link #getDigestThreads()}.
+     */
+    @DataBoundSetter
+    public void setParallelDigestThresholdMb(int x) {
+        parallelDigestThresholdMb = Math.max(0, x);
+    }
+
+    public int getParallelDigestThresholdMb() {
+        return parallelDigestThresholdMb == null ? SigningOptions.DEFAULT_PARALLEL_DIGEST_THRESHOLD_MB : parallelDigestThresholdMb;
+    }
+
+    /**
+     * How the agent reads the APKs to sign and writes the signed APKs.  This does not change the signed APKs.
+     */
+    @DataBoundSetter
+    public void setApkIoMode(ApkIoMode x) {
+        apkIoMode = x;
+    }
+
+    public ApkIoMode getApkIoMode() {
+        return apkIoMode == null ? ApkIoMode.RANDOM_ACCESS_FILE : apkIoMode;
+    }
+
+    @DataBoundSetter
+    public void setV1Signing(V1Signing x) {
+        v1Signing = x;
+    }
+
+    public V1Signing getV1Signing() {
+        return v1Signing == null ? V1Signing.AUTO : v1Signing;
+    }
+
+    @DataBoundSetter
+    public void setV2SigningEnabled(boolean x) {
+        v2SigningEnabled = x;
+    }
+
+    public boolean getV2SigningEnabled() {
+        return v2SigningEnabled == null || v2SigningEnabled;
+    }
+
+    @DataBoundSetter
+    public void setV3SigningEnabled(boolean x) {
+        v3SigningEnabled = x;
+    }
+
+    public boolean getV3SigningEnabled() {
+        return v3SigningEnabled == null || v3SigningEnabled;
+    }
+
+    /**
+     * Also write an APK Signature Scheme v4 signature for incremental installation, in a {@code .idsig} file next to
+     * each signed APK.
+     */
+    @DataBoundSetter
+    public void setV4SigningEnabled(boolean x) {
+        v4SigningEnabled = x;
+    }
+
+    public boolean getV4SigningEnabled() {
+        return v4SigningEnabled;
+    }
+
+    /**
+     * The lowest Android SDK version the signed APKs must verify on, which determines whether {@link V1Signing#AUTO}
+     * signs with v1.  Zero or less means use the {@code minSdkVersion} of each APK's manifest.
+     */
+    @DataBoundSetter
+    public void setMinSdkVersion(int x) {
+        minSdkVersion = Math.max(0, x);
+    }
+
+    public int getMinSdkVersion() {
+        return minSdkVersion;
+    }
+
+    /**
+     * The highest Android SDK version the signed APKs must verify on, to check the enabled signature schemes against.
+     * Zero or less means no maximum.
+     */
+    @DataBoundSetter
+    public void setMaxSdkVersion(int x) {
+        maxSdkVersion = Math.max(0, x);
+    }
+
+    public int getMaxSdkVersion() {
+        return maxSdkVersion;
+    }
+
+    /**
+     * Keep the signed APKs in a {@link SignedApkCache cache} on the node that owns the workspace, and put the cached
+     * signed APK at the signed APK destination instead of aligning and signing again when an unsigned APK, the
+     * signing certificate, and the alignment settings are the same as a previous step's.
+     */
+    @DataBoundSetter
+    public void setCacheSignedApks(boolean x) {
+        cacheSignedApks = x;
+    }
+
+    public boolean getCacheSignedApks() {
+        return cacheSignedApks;
+    }
+
     @DataBoundSetter
     public void setArchiveSignedApks(boolean x) {
         archiveSignedApks = x;
@@ -241,6 +481,11 @@ public class SignApksBuilder extends Builder implements SimpleBuildStep {
 
     @Override
     public void perform(@NonNull Run<?, ?> run, @NonNull FilePath workspace, @NonNull Launcher launcher, @NonNull TaskListener listener) throws InterruptedException, IOException {
+        perform(run, workspace, null, launcher, listener);
+    }
+
+    @Override
+    public void perform(@NonNull Run<?, ?> run, @NonNull FilePath workspace, EnvVars stepEnv, @NonNull Launcher launcher, @NonNull TaskListener listener) throws InterruptedException, IOException {
         if (isIntermediateFailure(run)) {
             listener.getLogger().println("[SignApksBuilder] skipping Sign APKs step because a previous step failed");
             return;
@@ -249,47 +494,36 @@ public class SignApksBuilder extends Builder implements SimpleBuildStep {
         if (getEntries() != null && !getEntries().isEmpty()) {
             List<SignApksBuilder> newModelBuilders = singleEntryBuildersFromEntriesOfBuilder(this);
             for (SignApksBuilder builder : newModelBuilders) {
-                builder.perform(run, workspace, launcher, listener);
+                builder.perform(run, workspace, stepEnv, launcher, listener);
             }
             return;
         }
 
-        ArgumentListBuilder command = new ArgumentListBuilder().add("echo").addQuoted("resolving effective environment");
-        command.toWindowsCommand();
-        if (!launcher.isUnix()) {
-            command = command.toWindowsCommand();
-        }
-        // force the Custom Tools plugin to inject the custom tools env vars via its DecoratedLauncher
-        Launcher.ProcStarter getEffectiveEnv = launcher.launch().pwd(workspace).cmds(command);
+        SigningReport report = new SigningReport(getKeyStoreId(), getKeyAlias(), getApksToSign());
+        long start = System.nanoTime();
+        Throwable failure = null;
         try {
-            getEffectiveEnv.join();
+            signApks(run, workspace, stepEnv, launcher, listener, report);
         }
-        catch (Exception e) {
-            listener.getLogger().println("[SignApksBuilder] error resolving effective script environment, but this does not necessarily fail your build:");
-            e.printStackTrace(listener.getLogger());
+        catch (IOException | InterruptedException | RuntimeException e) {
+            failure = e;
+            throw e;
         }
-        String[] envLines = getEffectiveEnv.envs();
-        EnvVars shellEnv = new EnvVars();
-        for (String envVar : envLines) {
-            shellEnv.addLine(envVar);
+        finally {
+            report.finish(start, failure != null);
+            SigningReportAction.addTo(run, report);
+            SigningMetrics.record(report, workspace, failure);
         }
+    }
 
-        EnvVars env = new EnvVars();
-        if (run instanceof AbstractBuild) {
-            EnvVars runEnv = run.getEnvironment(listener);
-            env.overrideExpandingAll(runEnv);
-            env.overrideExpandingAll(((AbstractBuild<?,?>) run).getBuildVariables());
-        }
-        env.overrideAll(shellEnv);
+    private void signApks(Run<?, ?> run, FilePath workspace, EnvVars stepEnv, Launcher launcher, TaskListener listener, SigningReport report)
+        throws InterruptedException, IOException {
 
         FilePath builderDir = workspace.child(BUILDER_DIR);
         FilePath zipalignDir = builderDir.child("zipalign");
         zipalignDir.mkdirs();
 
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, env, workspace, listener.getLogger(), androidHome, zipalignPath);
-        Map<String,String> apksToArchive = new LinkedHashMap<>();
-
+        long phaseStart = report.start(SigningReport.KEY_LOADING);
         StandardCertificateCredentials keyStoreCredential = getKeystore(getKeyStoreId(), run.getParent());
         SigningComponents signingParams;
         try {
@@ -301,15 +535,23 @@ public class SignApksBuilder extends Builder implements SimpleBuildStep {
             e.printStackTrace(listener.getLogger());
             throw new AbortException(message);
         }
+        report.phase(SigningReport.KEY_LOADING, phaseStart);
 
+        phaseStart = report.start(SigningReport.MATCHING);
+        // results stay in path order regardless of the order parallel signing processes the APKs in
         Set<FilePath> matchedApks = new TreeSet<>(Comparator.comparing(FilePath::getRemote));
+        Map<String,Long> matchedApkSizes = new HashMap<>();
         String[] globs = getSelectionGlobs(getApksToSign());
-        for (String glob : globs) {
-            FilePath[] globMatch = workspace.list(glob, builderDir.getName() + "/**");
-            if (globMatch.length == 0) {
-                throw new AbortException("No APKs in workspace matching " + glob);
+        MatchApksCallable.Result matches = workspace.act(new MatchApksCallable(globs, builderDir.getName() + "/**"));
+        for (int i = 0; i < globs.length; i++) {
+            if (matches.matchCounts.get(i) == 0) {
+                throw new AbortException("No APKs in workspace matching " + globs[i]);
             }
-            matchedApks.addAll(Arrays.asList(globMatch));
+        }
+        for (MatchApksCallable.MatchedApk match : matches.apks) {
+            FilePath apk = new FilePath(workspace.getChannel(), match.path);
+            matchedApks.add(apk);
+            matchedApkSizes.put(apk.getRemote(), match.size);
         }
 
         final String archivePrefix = BUILDER_DIR + "/" + getKeyStoreId() + "/" + getKeyAlias() + "/";
@@ -318,73 +560,313 @@ public class SignApksBuilder extends Builder implements SimpleBuildStep {
             signedApkMapping = new SignedApkMappingStrategy.UnsignedApkSiblingMapping();
         }
 
+        String alignedApkToken = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+        List<FilePath> unsignedApks = new ArrayList<>(matchedApks.size());
+        List<Long> unsignedApkSizes = new ArrayList<>(matchedApks.size());
+        List<FilePath> alignedApks = new ArrayList<>(matchedApks.size());
+        List<SignApksCallable.Input> signingInputs = new ArrayList<>(matchedApks.size());
         for (FilePath unsignedApk : matchedApks) {
-            unsignedApk = unsignedApk.absolutize();
-
-            FilePath alignedApk = zipalignDir.createTempFile("aligned-" + unsignedApk.getBaseName() + "-", ".apk");
             FilePath signedApk = signedApkMapping.destinationForUnsignedApk(unsignedApk, workspace);
+            if (signedApk == null || signedApk.getParent() == null) {
+                listener.getLogger().printf("[SignApksBuilder] skipping APK %s with no signed APK destination%n", unsignedApk.getRemote());
+                continue;
+            }
+            String v4Signature = null;
+            if (v4SigningEnabled) {
+                FilePath v4SignatureFile = signedApkMapping.v4SignatureDestinationForSignedApk(signedApk, workspace);
+                if (v4SignatureFile == null) {
+                    throw new AbortException("no v4 signature destination for signed APK " + signedApk.getRemote());
+                }
+                v4Signature = v4SignatureFile.getRemote();
+            }
+            FilePath alignedApk = unsignedApk;
+            if (!skipZipalign && !internalZipalign) {
+                alignedApk = zipalignDir.child(String.format("aligned-%s-%s-%d.apk", unsignedApk.getBaseName(), alignedApkToken, unsignedApks.size()));
+            }
+            unsignedApks.add(unsignedApk);
+            unsignedApkSizes.add(matchedApkSizes.get(unsignedApk.getRemote()));
+            alignedApks.add(alignedApk);
+            signingInputs.add(new SignApksCallable.Input(unsignedApk.getRemote(), alignedApk.getRemote(), signedApk.getRemote(), v4Signature, null));
+        }
+        report.phase(SigningReport.MATCHING, phaseStart);
+        List<Long> matchedUnsignedApkSizes = unsignedApkSizes;
+
+        SigningOptions signingOptions = new SigningOptions(!skipZipalign && internalZipalign)
+            .pageAlignmentKb(skipZipalign ? 0 : getNativeLibraryPageAlignmentKb())
+            .ioMode(getApkIoMode())
+            .digestThreads(digestThreads)
+            .parallelDigestThresholdBytes(getParallelDigestThresholdMb() * 1024L * 1024L)
+            .signatureSchemes(getV1Signing(), getV2SigningEnabled(), getV3SigningEnabled(), v4SigningEnabled)
+            .sdkVersions(minSdkVersion, maxSdkVersion);
+        signingOptions.validate();
+
+        List<SignApksCallable.SignedApk> cachedApks = Collections.nCopies(signingInputs.size(), null);
+        String signedApkCacheDir = cacheSignedApks ? signedApkCacheDirFor(workspace, listener) : null;
+        if (signedApkCacheDir != null && !signingInputs.isEmpty()) {
+            phaseStart = report.start(SigningReport.CACHE_LOOKUP);
+            String settingsKey;
+            try {
+                settingsKey = SignedApkCache.settingsKeyFor(signingParams.certChain, signingParams.v1SigName, signingOptions.describeSignatureSettings(), alignmentSettings());
+            }
+            catch (GeneralSecurityException e) {
+                throw new AbortException("Error reading signing certificate from key store credential " + keyStoreCredential.getId() + ": " + e.getMessage());
+            }
+            SignedApkCache.Lookup.Result lookup = workspace.act(new SignedApkCache.Lookup(signedApkCacheDir, settingsKey, signingInputs, v4SigningEnabled, listener));
+            cachedApks = lookup.hits;
+            List<FilePath> uncachedUnsignedApks = new ArrayList<>(unsignedApks.size());
+            List<Long> uncachedUnsignedApkSizes = new ArrayList<>(unsignedApks.size());
+            List<FilePath> uncachedAlignedApks = new ArrayList<>(alignedApks.size());
+            List<SignApksCallable.Input> uncachedInputs = new ArrayList<>(signingInputs.size());
+            for (int i = 0; i < signingInputs.size(); i++) {
+                if (cachedApks.get(i) == null) {
+                    SignApksCallable.Input input = signingInputs.get(i);
+                    uncachedUnsignedApks.add(unsignedApks.get(i));
+                    uncachedUnsignedApkSizes.add(unsignedApkSizes.get(i));
+                    uncachedAlignedApks.add(alignedApks.get(i));
+                    uncachedInputs.add(new SignApksCallable.Input(input.unsignedApk, input.alignedApk, input.signedApk, input.v4Signature, lookup.keys.get(i)));
+                }
+            }
+            int hits = signingInputs.size() - uncachedInputs.size();
+            listener.getLogger().printf("[SignApksBuilder] signed APK cache: %d of %d APKs cached (%d%% hit rate)%n",
+                hits, signingInputs.size(), hits * 100 / signingInputs.size());
+            unsignedApks = uncachedUnsignedApks;
+            unsignedApkSizes = uncachedUnsignedApkSizes;
+            alignedApks = uncachedAlignedApks;
+            signingInputs = uncachedInputs;
+            report.phase(SigningReport.CACHE_LOOKUP, phaseStart);
+        }
+
+        ArchiveQueue archiveQueue = null;
+        if (pipelinedArchiving && (getArchiveSignedApks() || getArchiveUnsignedApks())) {
+            ArtifactManager artifactManager = run.pickArtifactManager();
+            BuildListener buildListener = BuildListenerAdapter.wrap(listener);
+            archiveQueue = new ArchiveQueue(artifacts -> artifactManager.archive(workspace, launcher, buildListener, artifacts), listener);
+            listener.getLogger().println("[SignApksBuilder] archiving each APK as soon as it is signed");
+        }
+
+        Map<String,Long> alignMillis = new ConcurrentHashMap<>();
+        try {
+            if (archiveQueue != null) {
+                for (SignApksCallable.SignedApk cachedApk : cachedApks) {
+                    if (cachedApk != null) {
+                        archiveQueue.submit(cachedApk.unsignedApkPath, artifactsOf(cachedApk, archivePrefix, listener));
+                    }
+                }
+            }
 
             if (skipZipalign) {
-                listener.getLogger().printf("[SignApksBuilder] skipping zipalign for unsigned apk %s", unsignedApk);
-                alignedApk = unsignedApk;
+                for (FilePath unsignedApk : unsignedApks) {
+                    listener.getLogger().printf("[SignApksBuilder] skipping zipalign for unsigned apk %s%n", unsignedApk);
+                }
+            }
+            else if (internalZipalign) {
+                listener.getLogger().println("[SignApksBuilder] using internal zipalign while signing APKs");
             }
             else {
-                ArgumentListBuilder zipalignCommand = zipalign.commandFor(unsignedApk.getRemote(), alignedApk.getRemote());
-                listener.getLogger().printf("[SignApksBuilder] %s%n", zipalignCommand);
-                int zipalignResult = launcher.launch()
-                    .cmds(zipalignCommand)
-                    .pwd(workspace)
-                    .stdout(listener)
-                    .stderr(listener.getLogger())
-                    .join();
-
-                if (zipalignResult != 0) {
-                    listener.fatalError("[SignApksBuilder] zipalign failed: exit code %d", zipalignResult);
-                    throw new AbortException(String.format("zipalign failed on APK %s: exit code %d", unsignedApk, zipalignResult));
+                phaseStart = report.start(SigningReport.ALIGNMENT);
+                List<String> misalignments = Collections.nCopies(unsignedApks.size(), "not checked");
+                if (skipAlignedApks && !unsignedApks.isEmpty()) {
+                    List<String> unsignedApkPaths = new ArrayList<>(unsignedApks.size());
+                    for (FilePath unsignedApk : unsignedApks) {
+                        unsignedApkPaths.add(unsignedApk.getRemote());
+                    }
+                    misalignments = workspace.act(new ApkAlignment.Check(unsignedApkPaths, ZipalignTool.ZIP_ALIGNMENT, signingOptions.pageAlignmentKb * 1024));
+                }
+                List<FilePath> misalignedApks = new ArrayList<>(unsignedApks.size());
+                List<FilePath> misalignedAlignedApks = new ArrayList<>(unsignedApks.size());
+                List<Long> misalignedApkSizes = new ArrayList<>(unsignedApks.size());
+                for (int i = 0; i < unsignedApks.size(); i++) {
+                    FilePath unsignedApk = unsignedApks.get(i);
+                    if (misalignments.get(i) == null) {
+                        listener.getLogger().printf("[SignApksBuilder] APK %s is already aligned, skipping zipalign%n", unsignedApk);
+                        SignApksCallable.Input input = signingInputs.get(i);
+                        alignedApks.set(i, unsignedApk);
+                        signingInputs.set(i, new SignApksCallable.Input(input.unsignedApk, input.unsignedApk, input.signedApk, input.v4Signature, input.cacheKey));
+                        continue;
+                    }
+                    if (skipAlignedApks) {
+                        listener.getLogger().printf("[SignApksBuilder] aligning APK %s: %s%n", unsignedApk, misalignments.get(i));
+                    }
+                    misalignedApks.add(unsignedApk);
+                    misalignedAlignedApks.add(alignedApks.get(i));
+                    misalignedApkSizes.add(unsignedApkSizes.get(i));
+                }
+                report.phase(SigningReport.ALIGNMENT, phaseStart);
+                if (!misalignedApks.isEmpty()) {
+                    phaseStart = report.start(SigningReport.ZIPALIGN_ENVIRONMENT);
+                    EnvVars env = zipalignEnvironment(run, workspace, stepEnv, launcher, listener);
+                    report.phase(SigningReport.ZIPALIGN_ENVIRONMENT, phaseStart);
+                    phaseStart = report.start(SigningReport.ALIGNMENT);
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    ZipalignTool zipalign = new ZipalignTool(launcher, bytes, env, workspace, listener.getLogger(), androidHome, zipalignPath, searchZipalignWithLauncher)
+                        .pageAlignmentKb(signingOptions.pageAlignmentKb);
+                    List<ApkTasks.Task<Void>> zipalignTasks = new ArrayList<>(misalignedApks.size());
+                    for (int i = 0; i < misalignedApks.size(); i++) {
+                        FilePath unsignedApk = misalignedApks.get(i);
+                        FilePath alignedApk = misalignedAlignedApks.get(i);
+                        zipalignTasks.add(apkListener -> {
+                            long apkStart = System.nanoTime();
+                            zipalignApk(unsignedApk, alignedApk, workspace, launcher, apkListener, zipalign);
+                            alignMillis.put(unsignedApk.getRemote(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - apkStart));
+                            return null;
+                        });
+                    }
+                    int zipalignThreads = parallelSigning && zipalignTasks.size() > 1 ? parallelSigningThreadsFor(workspace) : 1;
+                    ApkTasks.run(zipalignTasks, misalignedApkSizes, zipalignThreads, listener);
+                    // the first zipalign task finds zipalign before aligning its APK
+                    long alignmentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart);
+                    report.phaseMillis(SigningReport.ZIPALIGN_DISCOVERY, zipalign.getDiscoveryMillis());
+                    report.phaseMillis(SigningReport.ALIGNMENT, Math.max(0, alignmentMillis - zipalign.getDiscoveryMillis()));
+                    report.end();
                 }
             }
 
-            String alignedRelName = relativeToWorkspace(workspace, alignedApk);
-            String signedRelName = relativeToWorkspace(workspace, signedApk);
-
-            if (!alignedApk.exists()) {
-                throw new AbortException(String.format("aligned APK does not exist: %s", alignedRelName));
+            int signingThreads = parallelSigning ? parallelSigningThreads : 1;
+            List<SignApksCallable.SignedApk> newlySignedApks = Collections.emptyList();
+            if (!signingInputs.isEmpty()) {
+                phaseStart = report.start(SigningReport.SIGNING);
+                // one agent call signs every APK, so parallel signing goes largest first across all of them; with
+                // pipelined archiving, the agent reports each APK as soon as it is signed, and the queue uploads it
+                // while the agent signs the rest
+                SignApksCallable.Progress progress = null;
+                if (archiveQueue != null) {
+                    ArchiveQueue queue = archiveQueue;
+                    progress = workspace.getChannel().export(SignApksCallable.Progress.class,
+                        signedApk -> queue.submit(signedApk.unsignedApkPath, artifactsOf(signedApk, archivePrefix, listener)));
+                }
+                SigningKeySessions.Key key = new SigningKeySessions.Key(signingParams.key, signingParams.certChain, signingParams.v1SigName);
+                newlySignedApks = workspace.act(
+                    new SignApksCallable(signingInputs, key, signingOptions, signingThreads, signedApkCacheDir, progress, listener));
+                report.phase(SigningReport.SIGNING, phaseStart);
             }
 
-            listener.getLogger().printf("[SignApksBuilder] signing APK %s%n", alignedRelName);
+            listener.getLogger().println("[SignApksBuilder] finished signing APKs");
 
-            FilePath signedParent = signedApk.getParent();
-            if (signedParent == null) {
-                continue;
-            }
-            if (!signedParent.exists()) {
-                signedParent.mkdirs();
+            int newlySigned = 0;
+            for (int i = 0; i < cachedApks.size(); i++) {
+                SignApksCallable.SignedApk cachedApk = cachedApks.get(i);
+                if (cachedApk != null) {
+                    report.apk(new SigningReport.ApkTiming(cachedApk.unsignedApkPath, matchedUnsignedApkSizes.get(i), true, 0, 0, 0, 0));
+                    continue;
+                }
+                SignApksCallable.SignedApk signedApk = newlySignedApks.get(newlySigned);
+                Long apkAlignMillis = alignMillis.get(unsignedApks.get(newlySigned).getRemote());
+                report.apk(new SigningReport.ApkTiming(signedApk.unsignedApkPath, unsignedApkSizes.get(newlySigned), false,
+                    apkAlignMillis == null ? 0 : apkAlignMillis, signedApk.signMillis, signedApk.io.getBytesRead(), signedApk.io.getBytesWritten()));
+                newlySigned++;
             }
-            SignApkCallable signApk = new SignApkCallable(signingParams.key, signingParams.certChain, signingParams.v1SigName, signedApk.getRemote(), listener);
-            alignedApk.act(signApk);
 
-            listener.getLogger().printf("[SignApksBuilder] signed APK %s%n", signedRelName);
+            if (archiveQueue != null) {
+                phaseStart = report.start(SigningReport.ARCHIVING);
+                archiveQueue.awaitAll();
+                report.phase(SigningReport.ARCHIVING, phaseStart);
+                return;
+            }
 
-            if (getArchiveUnsignedApks()) {
-                listener.getLogger().printf("[SignApksBuilder] archiving unsigned APK %s%n", unsignedApk);
-                apksToArchive.put(archivePrefix + unsignedApk.getName() + "/" + unsignedApk.getName(), relativeToWorkspace(workspace, unsignedApk));
+            phaseStart = report.start(SigningReport.ARCHIVING);
+            Map<String,String> apksToArchive = new LinkedHashMap<>();
+            newlySigned = 0;
+            for (SignApksCallable.SignedApk cachedApk : cachedApks) {
+                SignApksCallable.SignedApk signedApk = cachedApk != null ? cachedApk : newlySignedApks.get(newlySigned++);
+                apksToArchive.putAll(artifactsOf(signedApk, archivePrefix, listener));
+            }
+            if (apksToArchive.size() > 0) {
+                run.pickArtifactManager().archive(workspace, launcher, BuildListenerAdapter.wrap(listener), apksToArchive);
+                report.phase(SigningReport.ARCHIVING, phaseStart);
+            }
+        }
+        catch (IOException | InterruptedException | RuntimeException e) {
+            if (archiveQueue != null) {
+                archiveQueue.abort();
             }
-            if (getArchiveSignedApks()) {
-                listener.getLogger().printf("[SignApksBuilder] archiving signed APK %s%n", signedRelName);
-                apksToArchive.put(archivePrefix + unsignedApk.getName() + "/" + signedApk.getName(), signedRelName);
+            throw e;
+        }
+    }
+
+    /**
+     * The artifacts to archive for one signed APK, mapped from their paths in the build's archive to their paths
+     * relative to the workspace.
+     */
+    private Map<String,String> artifactsOf(SignApksCallable.SignedApk signedApk, String archivePrefix, TaskListener listener) {
+        Map<String,String> artifacts = new LinkedHashMap<>();
+        if (getArchiveUnsignedApks()) {
+            listener.getLogger().printf("[SignApksBuilder] archiving unsigned APK %s%n", signedApk.unsignedApkPath);
+            artifacts.put(archivePrefix + signedApk.unsignedApkName + "/" + signedApk.unsignedApkName, signedApk.unsignedApkPath);
+        }
+        if (getArchiveSignedApks()) {
+            listener.getLogger().printf("[SignApksBuilder] archiving signed APK %s%n", signedApk.signedApkPath);
+            artifacts.put(archivePrefix + signedApk.unsignedApkName + "/" + signedApk.signedApkName, signedApk.signedApkPath);
+            if (signedApk.v4SignaturePath != null) {
+                listener.getLogger().printf("[SignApksBuilder] archiving v4 signature %s%n", signedApk.v4SignaturePath);
+                artifacts.put(archivePrefix + signedApk.unsignedApkName + "/" + signedApk.v4SignatureName, signedApk.v4SignaturePath);
             }
         }
+        return artifacts;
+    }
+
+    /**
+     * The environment for finding zipalign.  Only starts a process to resolve the launcher's effective environment
+     * when the zipalign location may depend on it, i.e., there is no explicit zipalign path or Android home override
+     * or an override refers to variables.
+     */
+    private EnvVars zipalignEnvironment(Run<?, ?> run, FilePath workspace, EnvVars stepEnv, Launcher launcher, TaskListener listener)
+        throws IOException, InterruptedException {
+
+        EnvVars env = new EnvVars();
+        if (run instanceof AbstractBuild) {
+            EnvVars runEnv = run.getEnvironment(listener);
+            env.overrideExpandingAll(runEnv);
+            env.overrideExpandingAll(((AbstractBuild<?,?>) run).getBuildVariables());
+        }
+        String override = StringUtils.isEmpty(zipalignPath) ? androidHome : zipalignPath;
+        if (StringUtils.isEmpty(override) || override.contains("$")) {
+            env.overrideAll(EffectiveEnvironment.shellEnvFor(run, workspace, launcher, stepEnv != null ? stepEnv : env, listener));
+        }
+        return env;
+    }
+
+    private void zipalignApk(FilePath unsignedApk, FilePath alignedApk, FilePath workspace, Launcher launcher, TaskListener listener, ZipalignTool zipalign)
+        throws IOException, InterruptedException {
+
+        ArgumentListBuilder zipalignCommand = zipalign.commandFor(unsignedApk.getRemote(), alignedApk.getRemote());
+        listener.getLogger().printf("[SignApksBuilder] %s%n", zipalignCommand);
+        int zipalignResult = launcher.launch()
+            .cmds(zipalignCommand)
+            .pwd(workspace)
+            .stdout(listener)
+            .stderr(listener.getLogger())
+            .join();
+
+        if (zipalignResult != 0) {
+            listener.fatalError("[SignApksBuilder] zipalign failed: exit code %d", zipalignResult);
+            throw new AbortException(String.format("zipalign failed on APK %s: exit code %d", unsignedApk, zipalignResult));
+        }
+    }
 
-        listener.getLogger().println("[SignApksBuilder] finished signing APKs");
+    private String alignmentSettings() {
+        if (skipZipalign) {
+            return "none";
+        }
+        String aligner = internalZipalign ? "internal" : skipAlignedApks ? "zipalign-unless-aligned" : "zipalign";
+        return aligner + ",pageKB=" + getNativeLibraryPageAlignmentKb();
+    }
 
-        if (apksToArchive.size() > 0) {
-            run.pickArtifactManager().archive(workspace, launcher, BuildListenerAdapter.wrap(listener), apksToArchive);
+    private static String signedApkCacheDirFor(FilePath workspace, TaskListener listener) {
+        Computer computer = workspace.toComputer();
+        Node node = computer == null ? null : computer.getNode();
+        FilePath root = node == null ? null : node.getRootPath();
+        if (root == null) {
+            listener.getLogger().println("[SignApksBuilder] not caching signed APKs because the node that owns the workspace is offline");
+            return null;
         }
+        return root.child("caches").child("android-signing").child("signed-apks").getRemote();
     }
 
-    private String relativeToWorkspace(FilePath ws, FilePath path) throws IOException, InterruptedException {
-        URI relUri = ws.toURI().relativize(path.toURI());
-        return relUri.getPath().replaceFirst("/$", "");
+    private int parallelSigningThreadsFor(FilePath workspace) throws IOException, InterruptedException {
+        if (parallelSigningThreads > 0) {
+            return parallelSigningThreads;
+        }
+        return workspace.act(new GetAvailableProcessors());
     }
 
     private StandardCertificateCredentials getKeystore(String keyStoreName, Item item) {
@@ -433,6 +915,19 @@ public class SignApksBuilder extends Builder implements SimpleBuildStep {
             return items;
         }
 
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillNativeLibraryPageAlignmentKbItems() {
+            return pageAlignmentItems();
+        }
+
+        static ListBoxModel pageAlignmentItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (int pageKb : ZipalignTool.PAGE_ALIGNMENTS_KB) {
+                items.add(Messages.nativeLibraryPageAlignment_displayName(pageKb), String.valueOf(pageKb));
+            }
+            return items;
+        }
+
         @SuppressWarnings("unused")
         public FormValidation doCheckAlias(@AncestorInPath AbstractProject project, @QueryParameter String value) throws IOException {
             return FormValidation.validateRequired(value);
@@ -467,62 +962,175 @@ public class SignApksBuilder extends Builder implements SimpleBuildStep {
 
     }
 
-    static class SignApkCallable extends MasterToSlaveFileCallable<Void> {
+    static class SignApkCallable extends MasterToSlaveFileCallable<ApkIoCounters> {
 
         private static final long serialVersionUID = 1;
 
-        private final PrivateKey key;
-        private final Certificate[] certChain;
-        private final String v1SigName;
+        private final String keySession;
         private final String outputApk;
+        private final String outputV4Signature;
+        private final SigningOptions options;
         private final TaskListener listener;
+        private int concurrentApks = 1;
 
-        SignApkCallable(PrivateKey key, Certificate[] certChain, String v1SigName, String outputApk, TaskListener listener) {
-            this.key = key;
-            this.certChain = certChain;
-            this.v1SigName = v1SigName;
+        /**
+         * @param keySession the handle of a {@link SigningKeySessions} session open on the agent that runs this callable
+         */
+        SignApkCallable(String keySession, String outputApk, SigningOptions options, TaskListener listener) {
+            this(keySession, outputApk, null, options, listener);
+        }
+
+        /**
+         * @param outputV4Signature where to write the v4 signature if v4 signing is enabled, or null for next to the
+         *                          output APK
+         */
+        SignApkCallable(String keySession, String outputApk, String outputV4Signature, SigningOptions options, TaskListener listener) {
+            this.keySession = keySession;
             this.outputApk = outputApk;
+            this.outputV4Signature = outputV4Signature;
+            this.options = options;
             this.listener = listener;
         }
 
-        @Override
-        public Void invoke(File inputApkFile, VirtualChannel channel) throws IOException, InterruptedException {
+        /**
+         * The number of APKs the agent signs at the same time, including this one, which share the processors when
+         * {@link SigningOptions#digestThreads} is zero.
+         */
+        SignApkCallable concurrentApks(int x) {
+            concurrentApks = x;
+            return this;
+        }
 
-            File outputApkFile = new File(outputApk);
-            if (outputApkFile.isFile()) {
-                listener.getLogger().printf("[SignApksBuilder] deleting previous signed APK %s%n", outputApk);
-                if (!outputApkFile.delete()) {
-                    throw new AbortException("failed to delete previous signed APK " + outputApk);
+        @Override
+        public ApkIoCounters invoke(File inputApkFile, VirtualChannel channel) throws IOException, InterruptedException {
+
+            List<ApkSigner.SignerConfig> signerConfigs = SigningKeySessions.signerConfigsFor(keySession);
+
+            // sign into temporary files and rename them onto the destinations, so other steps reading the signed APK
+            // concurrently, e.g., in parallel Pipeline branches, see the previous or the new APK, never part of one
+            Path outputApkFile = new File(outputApk).toPath();
+            Path tempApk = AtomicFiles.tempSiblingOf(outputApkFile);
+            Path v4SignatureFile = null;
+            Path tempV4Signature = null;
+            if (options.v4SigningEnabled) {
+                v4SignatureFile = outputV4Signature != null ? new File(outputV4Signature).toPath() : v4SignatureFileFor(outputApkFile.toFile()).toPath();
+                tempV4Signature = AtomicFiles.tempSiblingOf(v4SignatureFile);
+            }
+            try {
+                ApkIoCounters io = new ApkIoCounters();
+                try (ApkDataFiles apkData = ApkDataFiles.open(options.ioMode, inputApkFile, tempApk.toFile())) {
+                    sign(signerConfigs, io, apkData, inputApkFile, tempV4Signature == null ? null : tempV4Signature.toFile());
+                }
+                if (options.pageAlignmentKb > 0) {
+                    verifyAlignment(tempApk.toFile());
+                }
+                if (tempV4Signature != null) {
+                    AtomicFiles.replace(tempV4Signature, v4SignatureFile);
                 }
+                AtomicFiles.replace(tempApk, outputApkFile);
+                return io;
             }
-
-            List<X509Certificate> certs = new ArrayList<>(certChain.length);
-            for (Certificate cert : certChain) {
-                certs.add((X509Certificate) cert);
+            finally {
+                Files.deleteIfExists(tempApk);
+                if (tempV4Signature != null) {
+                    Files.deleteIfExists(tempV4Signature);
+                }
             }
-            ApkSigner.SignerConfig signerConfig = new ApkSigner.SignerConfig.Builder(v1SigName, key, certs).build();
-            List<ApkSigner.SignerConfig> signerConfigs = Collections.singletonList(signerConfig);
+        }
 
-            ApkSigner.Builder signerBuilder = new ApkSigner.Builder(signerConfigs)
-                .setInputApk(inputApkFile)
-                .setOutputApk(outputApkFile)
-                .setOtherSignersSignaturesPreserved(false)
-                // TODO: add to jenkins descriptor
-                .setV1SigningEnabled(true)
-                .setV2SigningEnabled(true)
-                .setV3SigningEnabled(true);
+        /**
+         * @param v4Signature where to write the v4 signature, or null if v4 signing is disabled
+         */
+        private void sign(List<ApkSigner.SignerConfig> signerConfigs, ApkIoCounters io, ApkDataFiles apkData, File inputApkFile, File v4Signature)
+            throws AbortException {
 
-            ApkSigner signer = signerBuilder.build();
+            DataSource inputApk = io.count(apkData.input);
+            DataSource outputApkSource = io.count(apkData.outputSource);
+            DefaultApkSignerEngine signerEngine = null;
             try {
-                signer.sign();
+                int minSdkVersion = minSdkVersionFor(inputApk, options);
+                options.validateFor(minSdkVersion);
+                listener.getLogger().printf("[SignApksBuilder] signing with schemes %s for minimum SDK version %d%n",
+                    String.join(", ", options.schemesFor(minSdkVersion)), minSdkVersion);
+                signerEngine = signerEngineFor(signerConfigs, inputApk, minSdkVersion, options, concurrentApks);
+                ApkSigner.Builder signerBuilder = new ApkSigner.Builder(signerEngine)
+                    .setInputApk(inputApk)
+                    .setOutputApk(io.count(apkData.output), outputApkSource);
+                if (options.pageAlignmentKb > 0) {
+                    // apksig aligns the output's uncompressed entries, as alignment preservation is off by default;
+                    // internal zipalign relies on that, and zipalign's page size keeps zipaligned entries in place
+                    signerBuilder.setLibraryPageAlignmentBytes(options.pageAlignmentKb * 1024);
+                }
+                signerBuilder.build().sign();
+                if (v4Signature != null) {
+                    // the v4 Merkle tree covers the whole signed APK, including the signing block, so this reads the
+                    // output apksig just wrote, which is still in the page cache
+                    signerEngine.signV4(outputApkSource, v4Signature, false);
+                }
+            }
+            catch (AbortException e) {
+                listener.fatalError("[SignApksBuilder] error signing APK %s: %s", inputApkFile.getAbsolutePath(), e.getMessage());
+                throw e;
             }
             catch (Exception e) {
                 PrintWriter details = listener.fatalError("[SignApksBuilder] error signing APK %s", inputApkFile.getAbsolutePath());
                 e.printStackTrace(details);
                 throw new AbortException("failed to sign APK " + inputApkFile.getAbsolutePath() + ": " + e.getLocalizedMessage());
             }
+            finally {
+                if (signerEngine != null) {
+                    signerEngine.close();
+                }
+            }
+        }
 
-            return null;
+        /**
+         * Check the signed APK has the alignment zipalign or apksig gave it, so an APK with native libraries devices
+         * cannot map from the APK never replaces the previous signed APK.
+         */
+        private void verifyAlignment(File signedApk) throws IOException {
+            String signedName = new File(outputApk).getName();
+            String misalignment = ApkAlignment.misalignmentOf(signedApk, ZipalignTool.ZIP_ALIGNMENT, options.pageAlignmentKb * 1024);
+            if (misalignment != null) {
+                listener.fatalError("[SignApksBuilder] signed APK %s is not aligned: %s", signedName, misalignment);
+                throw new AbortException(String.format("signed APK %s is not aligned: %s", signedName, misalignment));
+            }
+            listener.getLogger().printf("[SignApksBuilder] verified alignment of signed APK %s: uncompressed native libraries aligned to %d KB pages%n",
+                signedName, options.pageAlignmentKb);
+        }
+
+        static File v4SignatureFileFor(File signedApk) {
+            return new File(signedApk.getPath() + ".idsig");
+        }
+
+        static int minSdkVersionFor(DataSource inputApk, SigningOptions options) throws IOException, ApkFormatException, MinSdkVersionException {
+            if (options.minSdkVersion > 0) {
+                return options.minSdkVersion;
+            }
+            return ApkUtils.getMinSdkVersionFromBinaryAndroidManifest(ApkUtils.getAndroidManifest(inputApk));
+        }
+
+        /**
+         * {@link ApkSigner} only accepts a content digest executor through an engine, so this builds the engine
+         * {@link ApkSigner} would otherwise build itself.
+         */
+        static DefaultApkSignerEngine signerEngineFor(List<ApkSigner.SignerConfig> signerConfigs, DataSource inputApk, int minSdkVersion, SigningOptions options,
+            int concurrentApks)
+            throws GeneralSecurityException {
+
+            List<DefaultApkSignerEngine.SignerConfig> engineSignerConfigs = new ArrayList<>(signerConfigs.size());
+            for (ApkSigner.SignerConfig signerConfig : signerConfigs) {
+                engineSignerConfigs.add(new DefaultApkSignerEngine.SignerConfig.Builder(
+                    signerConfig.getName(), signerConfig.getPrivateKey(), signerConfig.getCertificates()).build());
+            }
+            DefaultApkSignerEngine signerEngine = new DefaultApkSignerEngine.Builder(engineSignerConfigs, minSdkVersion)
+                .setOtherSignersSignaturesPreserved(false)
+                .setV1SigningEnabled(options.v1Signing.isEnabledFor(minSdkVersion))
+                .setV2SigningEnabled(options.v2SigningEnabled)
+                .setV3SigningEnabled(options.v3SigningEnabled)
+                .build();
+            signerEngine.setExecutor(ContentDigestExecutor.forApk(inputApk.size(), options.digestThreads, concurrentApks, options.parallelDigestThresholdBytes));
+            return signerEngine;
         }
     }
 
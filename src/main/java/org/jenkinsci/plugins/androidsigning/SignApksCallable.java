@@ -0,0 +1,235 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import hudson.AbortException;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+
+/**
+ * Signs a batch of aligned APKs in a single call to the agent that owns the workspace.  This avoids the remoting
+ * round trips of checking, creating directories, signing and resolving workspace-relative paths separately for
+ * every APK.  The returned list has one {@link SignedApk} per input, in the same order as the inputs.
+ */
+class SignApksCallable extends MasterToSlaveFileCallable<List<SignApksCallable.SignedApk>> {
+
+    private static final long serialVersionUID = 1;
+
+    static class Input implements Serializable {
+
+        private static final long serialVersionUID = 1;
+
+        final String unsignedApk;
+        final String alignedApk;
+        final String signedApk;
+        final String v4Signature;
+        final String cacheKey;
+
+        Input(String unsignedApk, String alignedApk, String signedApk) {
+            this(unsignedApk, alignedApk, signedApk, null, null);
+        }
+
+        /**
+         * @param v4Signature where to write the v4 signature if v4 signing is enabled, or null for next to the
+         *                    signed APK
+         * @param cacheKey the {@link SignedApkCache} key to store the signed APK under, or null
+         */
+        Input(String unsignedApk, String alignedApk, String signedApk, String v4Signature, String cacheKey) {
+            this.unsignedApk = unsignedApk;
+            this.alignedApk = alignedApk;
+            this.signedApk = signedApk;
+            this.v4Signature = v4Signature;
+            this.cacheKey = cacheKey;
+        }
+
+        File v4SignatureFile() {
+            if (v4Signature != null) {
+                return new File(v4Signature).getAbsoluteFile();
+            }
+            return SignApksBuilder.SignApkCallable.v4SignatureFileFor(new File(signedApk).getAbsoluteFile());
+        }
+    }
+
+    static class SignedApk implements Serializable {
+
+        private static final long serialVersionUID = 1;
+
+        final String unsignedApkName;
+        final String unsignedApkPath;
+        final String signedApkName;
+        final String signedApkPath;
+        /**
+         * Null if v4 signing is disabled.
+         */
+        final String v4SignatureName;
+        final String v4SignaturePath;
+        final ApkIoCounters io;
+        /**
+         * The wall time signing took, zero for a signed APK from the {@link SignedApkCache}.
+         */
+        final long signMillis;
+
+        SignedApk(String unsignedApkName, String unsignedApkPath, String signedApkName, String signedApkPath, String v4SignatureName, String v4SignaturePath, ApkIoCounters io) {
+            this(unsignedApkName, unsignedApkPath, signedApkName, signedApkPath, v4SignatureName, v4SignaturePath, io, 0);
+        }
+
+        SignedApk(String unsignedApkName, String unsignedApkPath, String signedApkName, String signedApkPath, String v4SignatureName, String v4SignaturePath, ApkIoCounters io, long signMillis) {
+            this.unsignedApkName = unsignedApkName;
+            this.unsignedApkPath = unsignedApkPath;
+            this.signedApkName = signedApkName;
+            this.signedApkPath = signedApkPath;
+            this.v4SignatureName = v4SignatureName;
+            this.v4SignaturePath = v4SignaturePath;
+            this.io = io;
+            this.signMillis = signMillis;
+        }
+    }
+
+    /**
+     * Told about each APK as soon as the callable signs it, e.g., to archive the APK while the callable signs the
+     * others.  To call back from a remote agent, {@link VirtualChannel#export(Class, Object) export} it to the
+     * agent's channel.
+     */
+    interface Progress {
+        void signed(SignedApk signedApk) throws IOException;
+    }
+
+    private final List<Input> inputs;
+    private final SigningKeySessions.Key key;
+    private final SigningOptions options;
+    private final int threads;
+    private final String signedApkCacheDir;
+    private final Progress progress;
+    private final TaskListener listener;
+
+    /**
+     * @param key the signing key, which the callable keeps in a {@link SigningKeySessions} session while it runs
+     * @param threads the maximum number of APKs to sign concurrently, or zero to use the number of processors
+     *                available on the agent
+     */
+    SignApksCallable(List<Input> inputs, SigningKeySessions.Key key, SigningOptions options, int threads, TaskListener listener) {
+        this(inputs, key, options, threads, null, listener);
+    }
+
+    /**
+     * @param signedApkCacheDir the directory of the {@link SignedApkCache} to store signed APKs of inputs with a
+     *                          cache key in, or null
+     */
+    SignApksCallable(List<Input> inputs, SigningKeySessions.Key key, SigningOptions options, int threads, String signedApkCacheDir, TaskListener listener) {
+        this(inputs, key, options, threads, signedApkCacheDir, null, listener);
+    }
+
+    /**
+     * @param progress told about each APK as soon as it is signed, in the order the APKs finish, or null
+     */
+    SignApksCallable(List<Input> inputs, SigningKeySessions.Key key, SigningOptions options, int threads, String signedApkCacheDir, Progress progress, TaskListener listener) {
+        this.inputs = inputs;
+        this.key = key;
+        this.options = options;
+        this.threads = threads;
+        this.signedApkCacheDir = signedApkCacheDir;
+        this.progress = progress;
+        this.listener = listener;
+    }
+
+    @Override
+    public List<SignedApk> invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        int maxThreads = Math.min(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), inputs.size());
+        String keySession = key.open();
+        try {
+            List<ApkTasks.Task<SignedApk>> tasks = new ArrayList<>(inputs.size());
+            List<Long> sizes = new ArrayList<>(inputs.size());
+            for (Input input : inputs) {
+                tasks.add(apkListener -> signApk(workspace, input, keySession, Math.max(1, maxThreads), apkListener, channel));
+                sizes.add(new File(input.alignedApk).length());
+            }
+            if (maxThreads > 1) {
+                listener.getLogger().printf("[SignApksBuilder] signing %d APKs with up to %d concurrent threads, largest first%n", tasks.size(), maxThreads);
+            }
+            return ApkTasks.run(tasks, sizes, maxThreads, listener);
+        }
+        finally {
+            SigningKeySessions.close(keySession);
+        }
+    }
+
+    private SignedApk signApk(File workspace, Input input, String keySession, int concurrentApks, TaskListener apkListener, VirtualChannel channel)
+        throws IOException, InterruptedException {
+
+        File unsignedApk = new File(input.unsignedApk).getAbsoluteFile();
+        File alignedApk = new File(input.alignedApk).getAbsoluteFile();
+        File signedApk = new File(input.signedApk).getAbsoluteFile();
+
+        String alignedRelName = relativeToWorkspace(workspace, alignedApk);
+        String signedRelName = relativeToWorkspace(workspace, signedApk);
+
+        if (!alignedApk.exists()) {
+            throw new AbortException(String.format("aligned APK does not exist: %s", alignedRelName));
+        }
+
+        if (options.alignInProcess) {
+            apkListener.getLogger().printf("[SignApksBuilder] aligning and signing APK %s%n", alignedRelName);
+        }
+        else {
+            apkListener.getLogger().printf("[SignApksBuilder] signing APK %s%n", alignedRelName);
+        }
+
+        File signedParent = signedApk.getParentFile();
+        if (!signedParent.isDirectory() && !signedParent.mkdirs()) {
+            throw new AbortException("failed to create signed APK directory " + signedParent);
+        }
+        File v4Signature = null;
+        if (options.v4SigningEnabled) {
+            v4Signature = input.v4SignatureFile();
+            File v4Parent = v4Signature.getParentFile();
+            if (!v4Parent.isDirectory() && !v4Parent.mkdirs()) {
+                throw new AbortException("failed to create v4 signature directory " + v4Parent);
+            }
+        }
+        SignApksBuilder.SignApkCallable signApk = new SignApksBuilder.SignApkCallable(
+            keySession, signedApk.getPath(), v4Signature == null ? null : v4Signature.getPath(), options, apkListener)
+            .concurrentApks(concurrentApks);
+        long start = System.nanoTime();
+        ApkIoCounters io = signApk.invoke(alignedApk, channel);
+        long signMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        apkListener.getLogger().printf("[SignApksBuilder] signed APK %s (read %,d bytes, wrote %,d bytes)%n",
+            signedRelName, io.getBytesRead(), io.getBytesWritten());
+
+        String v4RelName = null;
+        if (v4Signature != null) {
+            v4RelName = relativeToWorkspace(workspace, v4Signature);
+            apkListener.getLogger().printf("[SignApksBuilder] wrote v4 signature %s%n", v4RelName);
+        }
+
+        if (signedApkCacheDir != null && input.cacheKey != null) {
+            try {
+                new SignedApkCache(new File(signedApkCacheDir)).store(input.cacheKey, signedApk, v4Signature);
+            }
+            catch (IOException e) {
+                apkListener.getLogger().printf("[SignApksBuilder] error caching signed APK %s, but this does not fail your build:%n", signedRelName);
+                e.printStackTrace(apkListener.getLogger());
+            }
+        }
+
+        SignedApk result = new SignedApk(unsignedApk.getName(), relativeToWorkspace(workspace, unsignedApk), signedApk.getName(), signedRelName,
+            v4Signature == null ? null : v4Signature.getName(), v4RelName, io, signMillis);
+        if (progress != null) {
+            progress.signed(result);
+        }
+        return result;
+    }
+
+    static String relativeToWorkspace(File workspace, File path) {
+        URI relUri = workspace.toURI().relativize(path.toURI());
+        return relUri.getPath().replaceFirst("/$", "");
+    }
+}
@@ -1,5 +1,6 @@
 package org.jenkinsci.plugins.androidsigning;
 
+import java.util.Locale;
 
 import hudson.Extension;
 import javaposse.jobdsl.dsl.Context;
@@ -39,6 +40,22 @@ public class SignApksDslContext extends ContextExtensionPoint {
             builder.setSkipZipalign(x);
         }
 
+        public void internalZipalign(boolean x) {
+            builder.setInternalZipalign(x);
+        }
+
+        public void searchZipalignWithLauncher(boolean x) {
+            builder.setSearchZipalignWithLauncher(x);
+        }
+
+        public void skipAlignedApks(boolean x) {
+            builder.setSkipAlignedApks(x);
+        }
+
+        public void nativeLibraryPageAlignmentKb(int x) {
+            builder.setNativeLibraryPageAlignmentKb(x);
+        }
+
         public void archiveSignedApks(boolean x) {
             builder.setArchiveSignedApks(x);
         }
@@ -47,6 +64,58 @@ public class SignApksDslContext extends ContextExtensionPoint {
             builder.setArchiveUnsignedApks(x);
         }
 
+        public void parallelSigning(boolean x) {
+            builder.setParallelSigning(x);
+        }
+
+        public void parallelSigningThreads(int x) {
+            builder.setParallelSigningThreads(x);
+        }
+
+        public void cacheSignedApks(boolean x) {
+            builder.setCacheSignedApks(x);
+        }
+
+        public void pipelinedArchiving(boolean x) {
+            builder.setPipelinedArchiving(x);
+        }
+
+        public void digestThreads(int x) {
+            builder.setDigestThreads(x);
+        }
+
+        public void parallelDigestThresholdMb(int x) {
+            builder.setParallelDigestThresholdMb(x);
+        }
+
+        public void apkIoMode(String x) {
+            builder.setApkIoMode(ApkIoMode.valueOf(x.toUpperCase(Locale.ENGLISH)));
+        }
+
+        public void v1Signing(String x) {
+            builder.setV1Signing(V1Signing.valueOf(x.toUpperCase(Locale.ENGLISH)));
+        }
+
+        public void v2SigningEnabled(boolean x) {
+            builder.setV2SigningEnabled(x);
+        }
+
+        public void v3SigningEnabled(boolean x) {
+            builder.setV3SigningEnabled(x);
+        }
+
+        public void v4SigningEnabled(boolean x) {
+            builder.setV4SigningEnabled(x);
+        }
+
+        public void minSdkVersion(int x) {
+            builder.setMinSdkVersion(x);
+        }
+
+        public void maxSdkVersion(int x) {
+            builder.setMaxSdkVersion(x);
+        }
+
         public void androidHome(String x) {
             builder.setAndroidHome(x);
         }
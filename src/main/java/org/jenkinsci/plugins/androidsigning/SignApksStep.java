@@ -20,6 +20,7 @@ import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
 
 
 public class SignApksStep extends AbstractStepImpl {
@@ -34,8 +35,25 @@ public class SignApksStep extends AbstractStepImpl {
     private String androidHome;
     private String zipalignPath;
     private boolean skipZipalign = false;
+    private boolean internalZipalign = false;
+    private boolean searchZipalignWithLauncher = false;
+    private boolean skipAlignedApks = false;
+    private int nativeLibraryPageAlignmentKb = ZipalignTool.DEFAULT_PAGE_ALIGNMENT_KB;
     private boolean archiveSignedApks = true;
     private boolean archiveUnsignedApks = false;
+    private boolean parallelSigning = false;
+    private int parallelSigningThreads = 0;
+    private boolean cacheSignedApks = false;
+    private boolean pipelinedArchiving = false;
+    private int digestThreads = 0;
+    private int parallelDigestThresholdMb = SigningOptions.DEFAULT_PARALLEL_DIGEST_THRESHOLD_MB;
+    private ApkIoMode apkIoMode = ApkIoMode.RANDOM_ACCESS_FILE;
+    private V1Signing v1Signing = V1Signing.AUTO;
+    private boolean v2SigningEnabled = true;
+    private boolean v3SigningEnabled = true;
+    private boolean v4SigningEnabled = false;
+    private int minSdkVersion = 0;
+    private int maxSdkVersion = 0;
 
     @DataBoundConstructor
     public SignApksStep() {
@@ -66,6 +84,26 @@ public class SignApksStep extends AbstractStepImpl {
         skipZipalign = x;
     }
 
+    @DataBoundSetter
+    public void setInternalZipalign(boolean x) {
+        internalZipalign = x;
+    }
+
+    @DataBoundSetter
+    public void setSearchZipalignWithLauncher(boolean x) {
+        searchZipalignWithLauncher = x;
+    }
+
+    @DataBoundSetter
+    public void setSkipAlignedApks(boolean x) {
+        skipAlignedApks = x;
+    }
+
+    @DataBoundSetter
+    public void setNativeLibraryPageAlignmentKb(int x) {
+        nativeLibraryPageAlignmentKb = x;
+    }
+
     @DataBoundSetter
     public void setArchiveSignedApks(boolean x) {
         archiveSignedApks = x;
@@ -76,6 +114,71 @@ public class SignApksStep extends AbstractStepImpl {
         archiveUnsignedApks = x;
     }
 
+    @DataBoundSetter
+    public void setParallelSigning(boolean x) {
+        parallelSigning = x;
+    }
+
+    @DataBoundSetter
+    public void setParallelSigningThreads(int x) {
+        parallelSigningThreads = x;
+    }
+
+    @DataBoundSetter
+    public void setCacheSignedApks(boolean x) {
+        cacheSignedApks = x;
+    }
+
+    @DataBoundSetter
+    public void setPipelinedArchiving(boolean x) {
+        pipelinedArchiving = x;
+    }
+
+    @DataBoundSetter
+    public void setDigestThreads(int x) {
+        digestThreads = x;
+    }
+
+    @DataBoundSetter
+    public void setParallelDigestThresholdMb(int x) {
+        parallelDigestThresholdMb = x;
+    }
+
+    @DataBoundSetter
+    public void setApkIoMode(ApkIoMode x) {
+        apkIoMode = x;
+    }
+
+    @DataBoundSetter
+    public void setV1Signing(V1Signing x) {
+        v1Signing = x;
+    }
+
+    @DataBoundSetter
+    public void setV2SigningEnabled(boolean x) {
+        v2SigningEnabled = x;
+    }
+
+    @DataBoundSetter
+    public void setV3SigningEnabled(boolean x) {
+        v3SigningEnabled = x;
+    }
+
+    @DataBoundSetter
+    public void setV4SigningEnabled(boolean x) {
+        v4SigningEnabled = x;
+    }
+
+    @DataBoundSetter
+    public void setMinSdkVersion(int x) {
+        minSdkVersion = x;
+    }
+
+    @DataBoundSetter
+    public void setMaxSdkVersion(int x) {
+        maxSdkVersion = x;
+    }
+
     @DataBoundSetter
     public void setAndroidHome(String x) {
         androidHome = x;
@@ -106,6 +209,22 @@ public class SignApksStep extends AbstractStepImpl {
         return skipZipalign;
     }
 
+    public boolean getInternalZipalign() {
+        return internalZipalign;
+    }
+
+    public boolean getSearchZipalignWithLauncher() {
+        return searchZipalignWithLauncher;
+    }
+
+    public boolean getSkipAlignedApks() {
+        return skipAlignedApks;
+    }
+
+    public int getNativeLibraryPageAlignmentKb() {
+        return nativeLibraryPageAlignmentKb;
+    }
+
     public boolean getArchiveSignedApks() {
         return archiveSignedApks;
     }
@@ -114,6 +233,58 @@ public class SignApksStep extends AbstractStepImpl {
         return archiveUnsignedApks;
     }
 
+    public boolean getParallelSigning() {
+        return parallelSigning;
+    }
+
+    public int getParallelSigningThreads() {
+        return parallelSigningThreads;
+    }
+
+    public boolean getCacheSignedApks() {
+        return cacheSignedApks;
+    }
+
+    public boolean getPipelinedArchiving() {
+        return pipelinedArchiving;
+    }
+
+    public int getDigestThreads() {
+        return digestThreads;
+    }
+
+    public int getParallelDigestThresholdMb() {
+        return parallelDigestThresholdMb;
+    }
+
+    public ApkIoMode getApkIoMode() {
+        return apkIoMode;
+    }
+
+    public V1Signing getV1Signing() {
+        return v1Signing;
+    }
+
+    public boolean getV2SigningEnabled() {
+        return v2SigningEnabled;
+    }
+
+    public boolean getV3SigningEnabled() {
+        return v3SigningEnabled;
+    }
+
+    public boolean getV4SigningEnabled() {
+        return v4SigningEnabled;
+    }
+
+    public int getMinSdkVersion() {
+        return minSdkVersion;
+    }
+
+    public int getMaxSdkVersion() {
+        return maxSdkVersion;
+    }
+
     public String getAndroidHome() {
         return androidHome;
     }
@@ -167,11 +338,28 @@ public class SignApksStep extends AbstractStepImpl {
             builder.setApksToSign(step.getApksToSign());
             builder.setSignedApkMapping(step.getSignedApkMapping());
             builder.setSkipZipalign(step.getSkipZipalign());
+            builder.setInternalZipalign(step.getInternalZipalign());
+            builder.setSearchZipalignWithLauncher(step.getSearchZipalignWithLauncher());
+            builder.setSkipAlignedApks(step.getSkipAlignedApks());
+            builder.setNativeLibraryPageAlignmentKb(step.getNativeLibraryPageAlignmentKb());
             builder.setArchiveSignedApks(step.getArchiveSignedApks());
             builder.setArchiveUnsignedApks(step.getArchiveUnsignedApks());
+            builder.setParallelSigning(step.getParallelSigning());
+            builder.setParallelSigningThreads(step.getParallelSigningThreads());
+            builder.setCacheSignedApks(step.getCacheSignedApks());
+            builder.setPipelinedArchiving(step.getPipelinedArchiving());
+            builder.setDigestThreads(step.getDigestThreads());
+            builder.setParallelDigestThresholdMb(step.getParallelDigestThresholdMb());
+            builder.setApkIoMode(step.getApkIoMode());
+            builder.setV1Signing(step.getV1Signing());
+            builder.setV2SigningEnabled(step.getV2SigningEnabled());
+            builder.setV3SigningEnabled(step.getV3SigningEnabled());
+            builder.setV4SigningEnabled(step.getV4SigningEnabled());
+            builder.setMinSdkVersion(step.getMinSdkVersion());
+            builder.setMaxSdkVersion(step.getMaxSdkVersion());
             builder.setAndroidHome(androidHome);
             builder.setZipalignPath(zipalignPath);
-            builder.perform(build, workspace, launcher, listener);
+            builder.perform(build, workspace, env, launcher, listener);
             return null;
         }
     }
@@ -192,5 +380,10 @@ public class SignApksStep extends AbstractStepImpl {
         public String getDisplayName() {
             return Messages.builderDisplayName();
         }
+
+        @SuppressWarnings("unused")
+        public ListBoxModel doFillNativeLibraryPageAlignmentKbItems() {
+            return SignApksBuilder.SignApksDescriptor.pageAlignmentItems();
+        }
     }
 }
@@ -0,0 +1,339 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+
+/**
+ * Node-local cache of signed APKs, keyed by the SHA-256 digest of the unsigned APK and the
+ * {@link #settingsKeyFor(Certificate[], String, String, String) signing and alignment settings}, so a step can skip
+ * aligning and signing an APK that is byte-for-byte the same as one it already signed with the same settings.
+ * Cached APKs are hard links to, or copies of, the signed APKs, and the cache evicts the least recently used APKs
+ * when its total size exceeds {@value #DEFAULT_MAX_SIZE_MB} MB, or the value of the
+ * {@code org.jenkinsci.plugins.androidsigning.SignedApkCache.maxSizeMb} system property of the node's JVM.
+ * The cache records when it last used each APK in the modification time of an empty marker file next to it, because
+ * touching a hard-linked APK would also touch the signed APK in the workspace.
+ * All methods except {@link #settingsKeyFor(Certificate[], String, String, String)} run on the node.
+ */
+final class SignedApkCache {
+
+    /**
+     * Computes the cache key of every input and puts the cached signed APK at the signed APK path of every input
+     * the cache has, in one call to the agent that owns the workspace.
+     */
+    static class Lookup extends MasterToSlaveFileCallable<Lookup.Result> {
+
+        private static final long serialVersionUID = 1;
+
+        static class Result implements Serializable {
+
+            private static final long serialVersionUID = 1;
+
+            /**
+             * One per input, in the same order.
+             */
+            final List<String> keys;
+            /**
+             * One per input, in the same order, null for inputs the cache does not have.
+             */
+            final List<SignApksCallable.SignedApk> hits;
+
+            Result(List<String> keys, List<SignApksCallable.SignedApk> hits) {
+                this.keys = keys;
+                this.hits = hits;
+            }
+        }
+
+        private final String cacheDir;
+        private final String settingsKey;
+        private final List<SignApksCallable.Input> inputs;
+        private final boolean v4Signatures;
+        private final TaskListener listener;
+
+        /**
+         * @param v4Signatures whether to also put the cached v4 signature at the v4 signature path of every input, in
+         *                     which case an input is a hit only if the cache has both
+         */
+        Lookup(String cacheDir, String settingsKey, List<SignApksCallable.Input> inputs, boolean v4Signatures, TaskListener listener) {
+            this.cacheDir = cacheDir;
+            this.settingsKey = settingsKey;
+            this.inputs = inputs;
+            this.v4Signatures = v4Signatures;
+            this.listener = listener;
+        }
+
+        @Override
+        public Result invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+            SignedApkCache cache = new SignedApkCache(new File(cacheDir));
+            List<String> keys = new ArrayList<>(inputs.size());
+            List<SignApksCallable.SignedApk> hits = new ArrayList<>(inputs.size());
+            for (SignApksCallable.Input input : inputs) {
+                File unsignedApk = new File(input.unsignedApk).getAbsoluteFile();
+                File signedApk = new File(input.signedApk).getAbsoluteFile();
+                File v4Signature = v4Signatures ? input.v4SignatureFile().getAbsoluteFile() : null;
+                String key = keyFor(unsignedApk, settingsKey);
+                keys.add(key);
+                if (cache.materialize(key, signedApk, v4Signature)) {
+                    String signedRelName = SignApksCallable.relativeToWorkspace(workspace, signedApk);
+                    listener.getLogger().printf("[SignApksBuilder] using cached signed APK %s for unsigned APK %s%n",
+                        signedRelName, SignApksCallable.relativeToWorkspace(workspace, unsignedApk));
+                    hits.add(new SignApksCallable.SignedApk(unsignedApk.getName(), SignApksCallable.relativeToWorkspace(workspace, unsignedApk),
+                        signedApk.getName(), signedRelName,
+                        v4Signature == null ? null : v4Signature.getName(),
+                        v4Signature == null ? null : SignApksCallable.relativeToWorkspace(workspace, v4Signature),
+                        new ApkIoCounters()));
+                }
+                else {
+                    hits.add(null);
+                }
+            }
+            return new Result(keys, hits);
+        }
+    }
+
+    static final long DEFAULT_MAX_SIZE_MB = 2048;
+
+    private static final String SUFFIX = ".apk";
+    private static final String V4_SIGNATURE_SUFFIX = SUFFIX + ".idsig";
+
+    private final Path dir;
+    private final long maxBytes;
+
+    SignedApkCache(File dir) {
+        this(dir, Long.getLong(SignedApkCache.class.getName() + ".maxSizeMb", DEFAULT_MAX_SIZE_MB) * 1024 * 1024);
+    }
+
+    SignedApkCache(File dir, long maxBytes) {
+        this.dir = dir.toPath();
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param signatureSettings a description of the signature schemes and SDK versions the step signs with
+     * @param alignment a description of how the step aligns APKs, e.g., with the external zipalign tool or internally
+     */
+    static String settingsKeyFor(Certificate[] certChain, String v1SigName, String signatureSettings, String alignment) throws GeneralSecurityException {
+        MessageDigest certDigest = sha256();
+        for (Certificate cert : certChain) {
+            certDigest.update(cert.getEncoded());
+        }
+        return "certs=" + HexFormat.of().formatHex(certDigest.digest()) +
+            ";v1SigName=" + v1SigName +
+            ";signature=" + signatureSettings +
+            ";alignment=" + alignment;
+    }
+
+    static String keyFor(File unsignedApk, String settingsKey) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(unsignedApk.toPath())) {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        digest.update(settingsKey.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    boolean materialize(String key, File signedApk) throws IOException {
+        return materialize(key, signedApk, null);
+    }
+
+    /**
+     * Put the cached signed APK for the given key at the given path, replacing any existing file there, and the
+     * cached v4 signature of the signed APK at the given v4 signature path, if not null.
+     *
+     * @return false if the cache has no signed APK for the key, or no v4 signature when one was requested
+     */
+    boolean materialize(String key, File signedApk, File v4Signature) throws IOException {
+        Path cached = dir.resolve(key + SUFFIX);
+        Path cachedV4Signature = dir.resolve(key + V4_SIGNATURE_SUFFIX);
+        if (!Files.isRegularFile(cached) || v4Signature != null && !Files.isRegularFile(cachedV4Signature)) {
+            return false;
+        }
+        try {
+            if (v4Signature != null) {
+                replaceWith(cachedV4Signature, v4Signature.toPath());
+            }
+            replaceWith(cached, signedApk.toPath());
+        }
+        catch (NoSuchFileException e) {
+            // evicted concurrently
+            return false;
+        }
+        markUsed(cached);
+        return true;
+    }
+
+    void store(String key, File signedApk) throws IOException {
+        store(key, signedApk, null);
+    }
+
+    /**
+     * @param v4Signature the v4 signature of the signed APK, or null if there is none
+     */
+    void store(String key, File signedApk, File v4Signature) throws IOException {
+        Files.createDirectories(dir);
+        // the signature goes first, so a lookup that finds the APK also finds its signature
+        if (v4Signature != null) {
+            storeAtomically(v4Signature.toPath(), dir.resolve(key + V4_SIGNATURE_SUFFIX));
+        }
+        Path cached = dir.resolve(key + SUFFIX);
+        storeAtomically(signedApk.toPath(), cached);
+        markUsed(cached);
+        evict();
+    }
+
+    private void storeAtomically(Path source, Path cached) throws IOException {
+        Path temp = dir.resolve("." + UUID.randomUUID() + ".tmp");
+        try {
+            linkOrCopy(source, temp);
+            AtomicFiles.replace(temp, cached);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void replaceWith(Path cached, Path destination) throws IOException {
+        Files.createDirectories(destination.getParent());
+        Path temp = AtomicFiles.tempSiblingOf(destination);
+        try {
+            linkOrCopy(cached, temp);
+            AtomicFiles.replace(temp, destination);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void markUsed(Path cachedApk) throws IOException {
+        Path marker = usedMarkerOf(cachedApk);
+        try {
+            Files.createFile(marker);
+        }
+        catch (FileAlreadyExistsException e) {
+            try {
+                Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            catch (NoSuchFileException evicted) {
+                // evicted concurrently
+            }
+        }
+    }
+
+    void evict() throws IOException {
+        List<Path> apks = new ArrayList<>();
+        List<BasicFileAttributes> attrs = new ArrayList<>();
+        List<FileTime> lastUsed = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path apk : entries) {
+                try {
+                    BasicFileAttributes apkAttrs = Files.readAttributes(apk, BasicFileAttributes.class);
+                    apks.add(apk);
+                    attrs.add(apkAttrs);
+                    lastUsed.add(lastUsedTimeOf(apk, apkAttrs));
+                    total += apkAttrs.size() + v4SignatureSize(apk);
+                }
+                catch (NoSuchFileException e) {
+                    // evicted concurrently
+                }
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        List<Integer> order = new ArrayList<>(apks.size());
+        for (int i = 0; i < apks.size(); i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> lastUsed.get(a).compareTo(lastUsed.get(b)));
+        for (int i : order) {
+            if (total <= maxBytes) {
+                break;
+            }
+            Path v4Signature = v4SignatureOf(apks.get(i));
+            total -= attrs.get(i).size() + v4SignatureSize(apks.get(i));
+            Files.deleteIfExists(apks.get(i));
+            Files.deleteIfExists(v4Signature);
+            Files.deleteIfExists(usedMarkerOf(apks.get(i)));
+        }
+    }
+
+    /**
+     * The modification time of the APK's marker, or of the APK itself if it has no marker, e.g., because a concurrent
+     * store has not written it yet.
+     */
+    private static FileTime lastUsedTimeOf(Path cachedApk, BasicFileAttributes apkAttrs) throws IOException {
+        try {
+            return Files.getLastModifiedTime(usedMarkerOf(cachedApk));
+        }
+        catch (NoSuchFileException e) {
+            return apkAttrs.lastModifiedTime();
+        }
+    }
+
+    private static Path usedMarkerOf(Path cachedApk) {
+        return cachedApk.resolveSibling(cachedApk.getFileName() + ".used");
+    }
+
+    private static Path v4SignatureOf(Path cachedApk) {
+        return cachedApk.resolveSibling(cachedApk.getFileName() + ".idsig");
+    }
+
+    private static long v4SignatureSize(Path cachedApk) throws IOException {
+        try {
+            return Files.size(v4SignatureOf(cachedApk));
+        }
+        catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        }
+        catch (FileAlreadyExistsException | NoSuchFileException e) {
+            throw e;
+        }
+        catch (UnsupportedOperationException | IOException e) {
+            // e.g., the cache and the workspace are on different file systems
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -21,6 +21,20 @@ public abstract class SignedApkMappingStrategy extends AbstractDescribableImpl<S
 
     public abstract FilePath destinationForUnsignedApk(FilePath unsignedApk, FilePath workspace);
 
+    /**
+     * Return the destination of the APK Signature Scheme v4 signature of the given signed APK, which
+     * {@code adb install --incremental} expects next to the APK with an {@code .idsig} suffix.
+     * @param signedApk the {@link #destinationForUnsignedApk(FilePath, FilePath) destination} of a signed APK
+     * @return the v4 signature destination, or null if there is none
+     */
+    public FilePath v4SignatureDestinationForSignedApk(FilePath signedApk, FilePath workspace) {
+        FilePath parent = signedApk.getParent();
+        if (parent == null) {
+            return null;
+        }
+        return parent.child(signedApk.getName() + ".idsig");
+    }
+
     public static ExtensionList<SignedApkMappingStrategy> all() {
         return Jenkins.getActiveInstance().getExtensionList(SignedApkMappingStrategy.class);
     }
@@ -18,9 +18,17 @@ public class SigningComponents implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Get the signing key and certificate chain from the given credential, reusing the components from a previous
+     * call for the same credential and key alias while they remain in the {@link SigningKeyCache}.
+     */
+    public static SigningComponents fromCredentials(StandardCertificateCredentials creds, String keyAlias) throws GeneralSecurityException {
+        return SigningKeyCache.INSTANCE.get(creds, keyAlias, () -> readFromKeyStore(creds, keyAlias));
+    }
+
     @edu.umd.cs.findbugs.annotations.SuppressFBWarnings(value="DCN_NULLPOINTER_EXCEPTION",
                                                         justification="getEntry can generate this exeception")
-    public static SigningComponents fromCredentials(StandardCertificateCredentials creds, String keyAlias) throws GeneralSecurityException {
+    static SigningComponents readFromKeyStore(StandardCertificateCredentials creds, String keyAlias) throws GeneralSecurityException {
         KeyStore keyStore = creds.getKeyStore();
         if (StringUtils.isEmpty(keyAlias)) {
             keyAlias = null;
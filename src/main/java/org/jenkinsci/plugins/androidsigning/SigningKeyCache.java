@@ -0,0 +1,213 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
+import com.cloudbees.plugins.credentials.impl.CertificateCredentialsImpl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import jenkins.util.SystemProperties;
+
+
+/**
+ * Bounded, expiring cache of the {@link SigningComponents} decoded from key store credentials.  Loading a PKCS#12
+ * key store and decrypting its key entry is expensive, and a pipeline can sign APKs with the same credential many
+ * times.  Entries are keyed by the credential ID, a digest of the credential's key store and password, and the
+ * requested key alias, so an updated credential never hits a stale entry.  The cache also drops all entries when
+ * Jenkins saves a credentials store.
+ */
+final class SigningKeyCache {
+
+    private static final Logger LOGGER = Logger.getLogger(SigningKeyCache.class.getName());
+
+    static final int DEFAULT_MAX_ENTRIES = 32;
+    static final long DEFAULT_TTL_MINUTES = 30;
+
+    static final SigningKeyCache INSTANCE = new SigningKeyCache(
+        SystemProperties.getInteger(SigningKeyCache.class.getName() + ".maxEntries", DEFAULT_MAX_ENTRIES),
+        TimeUnit.MINUTES.toMillis(SystemProperties.getLong(SigningKeyCache.class.getName() + ".ttlMinutes", DEFAULT_TTL_MINUTES)),
+        System::currentTimeMillis);
+
+    interface Loader {
+        SigningComponents load() throws GeneralSecurityException;
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    SigningKeyCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    SigningComponents get(StandardCertificateCredentials creds, String keyAlias, Loader loader) throws GeneralSecurityException {
+        String fingerprint = fingerprintOf(creds);
+        if (fingerprint == null) {
+            misses.increment();
+            return loader.load();
+        }
+        return get(new Key(creds.getId(), fingerprint, keyAlias), loader);
+    }
+
+    SigningComponents get(Key key, Loader loader) throws GeneralSecurityException {
+        if (maxEntries <= 0 || ttlMillis <= 0) {
+            misses.increment();
+            return loader.load();
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - clock.getAsLong() > 0) {
+                    hits.increment();
+                    return entry.components;
+                }
+                entries.remove(key);
+            }
+        }
+        misses.increment();
+        // load outside the lock so a slow key store does not block signing with other credentials
+        SigningComponents components = loader.load();
+        synchronized (entries) {
+            entries.put(key, new Entry(components, clock.getAsLong() + ttlMillis));
+            evictExpiredAndEldest();
+        }
+        return components;
+    }
+
+    void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    private void evictExpiredAndEldest() {
+        long now = clock.getAsLong();
+        for (Iterator<Entry> i = entries.values().iterator(); i.hasNext(); ) {
+            if (i.next().expiresAt - now <= 0) {
+                i.remove();
+            }
+        }
+        Iterator<Key> eldest = entries.keySet().iterator();
+        while (entries.size() > maxEntries) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return a digest of the key store bytes and password of the given credential, or null if the credential
+     * type does not expose its key store bytes, in which case the cache does not keep its key
+     */
+    static String fingerprintOf(StandardCertificateCredentials creds) {
+        if (!(creds instanceof CertificateCredentialsImpl)) {
+            return null;
+        }
+        CertificateCredentialsImpl impl = (CertificateCredentialsImpl) creds;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(impl.getKeyStoreSource().getKeyStoreBytes());
+            digest.update((byte) 0);
+            String password = impl.getPassword().getPlainText();
+            if (password != null) {
+                digest.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+        catch (Exception e) {
+            LOGGER.log(Level.FINE, "not caching signing key of credential " + creds.getId(), e);
+            return null;
+        }
+    }
+
+    static final class Key {
+
+        private final String credentialId;
+        private final String fingerprint;
+        private final String keyAlias;
+
+        Key(String credentialId, String fingerprint, String keyAlias) {
+            this.credentialId = credentialId;
+            this.fingerprint = fingerprint;
+            this.keyAlias = keyAlias == null ? "" : keyAlias;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return credentialId.equals(other.credentialId) && fingerprint.equals(other.fingerprint) && keyAlias.equals(other.keyAlias);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(credentialId, fingerprint, keyAlias);
+        }
+    }
+
+    private static final class Entry {
+
+        private final SigningComponents components;
+        private final long expiresAt;
+
+        private Entry(SigningComponents components, long expiresAt) {
+            this.components = components;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Credentials stores persist through their owner, i.e., the system credentials provider, a folder, or a user,
+     * so saving any of those may mean a credential changed.
+     */
+    @Extension
+    public static class InvalidateOnCredentialsChange extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider || o instanceof ItemGroup || o instanceof User) {
+                INSTANCE.invalidateAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.android.apksig.ApkSigner;
+
+import java.io.Serializable;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import hudson.AbortException;
+
+
+/**
+ * Agent-side registry of signing keys.  A Sign APKs step ships its {@link Key} to the agent once, in its single
+ * {@link SignApksCallable}, which opens a session for the key and closes it when it returns, so the key does not
+ * outlive the step in the agent's memory.  The callable signs each APK with a {@code SignApkCallable} that refers to
+ * the key by the session's opaque handle, rather than each carrying its own serialized copy.
+ */
+final class SigningKeySessions {
+
+    private static final Map<String, List<ApkSigner.SignerConfig>> SESSIONS = new ConcurrentHashMap<>();
+
+    private SigningKeySessions() {
+    }
+
+    static List<ApkSigner.SignerConfig> signerConfigsFor(String session) throws AbortException {
+        List<ApkSigner.SignerConfig> signerConfigs = SESSIONS.get(session);
+        if (signerConfigs == null) {
+            throw new AbortException("signing key session " + session + " is closed or does not exist on this agent");
+        }
+        return signerConfigs;
+    }
+
+    static int openSessionCount() {
+        return SESSIONS.size();
+    }
+
+    static String open(PrivateKey key, Certificate[] certChain, String v1SigName) {
+        List<X509Certificate> certs = new ArrayList<>(certChain.length);
+        for (Certificate cert : certChain) {
+            certs.add((X509Certificate) cert);
+        }
+        ApkSigner.SignerConfig signerConfig = new ApkSigner.SignerConfig.Builder(v1SigName, key, certs).build();
+        String session = UUID.randomUUID().toString();
+        SESSIONS.put(session, Collections.singletonList(signerConfig));
+        return session;
+    }
+
+    static void close(String session) {
+        SESSIONS.remove(session);
+    }
+
+    /**
+     * The signing material a {@link SignApksCallable} carries to the agent, once per step, to open its session with.
+     */
+    static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1;
+
+        private final PrivateKey key;
+        private final Certificate[] certChain;
+        private final String v1SigName;
+
+        Key(PrivateKey key, Certificate[] certChain, String v1SigName) {
+            this.key = key;
+            this.certChain = certChain;
+            this.v1SigName = v1SigName;
+        }
+
+        String open() {
+            return SigningKeySessions.open(key, certChain, v1SigName);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import jenkins.metrics.api.MetricProvider;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
+
+
+/**
+ * Publishes the {@link SigningReport} of each Sign Android APKs step to the Metrics plugin's registry, when the
+ * plugin is installed, as Dropwizard timers and counters under {@value #PREFIX}.  Dropwizard metrics have no tags,
+ * so the name of each per-step metric ends with {@code credential-<hash>.node-<label>}, the first 12 hex digits of
+ * the SHA-256 digest of the key store credential ID and the labels of the node that owns the workspace, e.g.,
+ * {@code android-signing.apks.signed.credential-1a2b3c4d5e6f.node-linux_android}.  Failures count by the phase
+ * that failed, e.g., {@code android-signing.failures.matching}.  The signing key cache is
+ * shared by all steps, so its hits and loads are gauges without credential or node.
+ */
+final class SigningMetrics {
+
+    static final String PREFIX = "android-signing";
+    static final String METRICS_PLUGIN = "metrics";
+    /**
+     * The cause of failures outside every {@link SigningReport} phase, e.g., invalid signing settings.
+     */
+    static final String OTHER_FAILURE = "other";
+
+    private SigningMetrics() {
+    }
+
+    /**
+     * Does nothing unless the Metrics plugin is installed.
+     *
+     * @param failure what failed the step, or null if it signed its APKs; the report's failed phase is the cause
+     */
+    static void record(SigningReport report, FilePath workspace, Throwable failure) {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null || jenkins.getPlugin(METRICS_PLUGIN) == null) {
+            return;
+        }
+        // only load the Metrics plugin's classes when it is installed
+        Registry.record(report, tagsFor(report.getKeyStoreId(), nodeLabelOf(workspace)), failure);
+    }
+
+    static String tagsFor(String credentialId, String nodeLabel) {
+        return "credential-" + hashOf(credentialId) + ".node-" + nameSegment(nodeLabel);
+    }
+
+    static String hashOf(String credentialId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(String.valueOf(credentialId).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 6; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("every JVM supports SHA-256", e);
+        }
+    }
+
+    /**
+     * Letters, digits, hyphens and underscores only, so a segment never adds a level to the metric name.  Keeps the
+     * case, so phase names read as in the {@link SigningReport}, e.g., {@code zipalignDiscovery}.
+     */
+    static String nameSegment(String value) {
+        String segment = value == null ? "" : value.trim().replaceAll("[^A-Za-z0-9_-]+", "_");
+        return segment.isEmpty() ? "none" : segment;
+    }
+
+    /**
+     * The node's labels as configured, or its name if it has none, e.g., the built-in node.
+     */
+    private static String nodeLabelOf(FilePath workspace) {
+        Computer computer = workspace.toComputer();
+        Node node = computer == null ? null : computer.getNode();
+        if (node == null) {
+            return null;
+        }
+        String labels = node.getLabelString();
+        return labels == null || labels.trim().isEmpty() ? node.getSelfLabel().getName() : labels;
+    }
+
+    private static final class Registry {
+
+        static void record(SigningReport report, String tags, Throwable failure) {
+            MetricRegistry registry = Metrics.metricRegistry();
+            registry.timer(MetricRegistry.name(PREFIX, "step", "duration", tags)).update(report.getTotalMillis(), TimeUnit.MILLISECONDS);
+            for (SigningReport.Phase phase : report.getPhases()) {
+                registry.timer(MetricRegistry.name(PREFIX, "phase", nameSegment(phase.getName()), tags)).update(phase.getMillis(), TimeUnit.MILLISECONDS);
+            }
+            long signed = 0;
+            long cached = 0;
+            long signedBytes = 0;
+            for (SigningReport.ApkTiming apk : report.getApks()) {
+                if (apk.isCached()) {
+                    cached++;
+                    continue;
+                }
+                signed++;
+                signedBytes += apk.getUnsignedApkBytes();
+                registry.timer(MetricRegistry.name(PREFIX, "apk", "sign", "duration", tags)).update(apk.getSignMillis(), TimeUnit.MILLISECONDS);
+            }
+            registry.counter(MetricRegistry.name(PREFIX, "apks", "signed", tags)).inc(signed);
+            registry.counter(MetricRegistry.name(PREFIX, "apks", "cached", tags)).inc(cached);
+            registry.counter(MetricRegistry.name(PREFIX, "bytes", "signed", tags)).inc(signedBytes);
+            if (failure != null) {
+                String cause = report.getFailedPhase() != null ? report.getFailedPhase() : OTHER_FAILURE;
+                registry.counter(MetricRegistry.name(PREFIX, "failures", nameSegment(cause), tags)).inc();
+            }
+        }
+    }
+
+    /**
+     * Registers the {@link SigningKeyCache} gauges when the Metrics plugin is installed.
+     */
+    @Extension(optional = true)
+    public static class KeyCacheMetrics extends MetricProvider {
+
+        @Override
+        public MetricSet getMetricSet() {
+            Map<String, Metric> metrics = new HashMap<>();
+            metrics.put(MetricRegistry.name(PREFIX, "keys", "cache", "hits"), (Gauge<Long>) SigningKeyCache.INSTANCE::getHitCount);
+            metrics.put(MetricRegistry.name(PREFIX, "keys", "loaded"), (Gauge<Long>) SigningKeyCache.INSTANCE::getMissCount);
+            return () -> metrics;
+        }
+    }
+}
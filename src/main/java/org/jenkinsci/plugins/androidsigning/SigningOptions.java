@@ -0,0 +1,158 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import hudson.AbortException;
+
+
+/**
+ * The settings of a Sign APKs step that determine how the agent signs each APK.
+ */
+class SigningOptions implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    static final int DEFAULT_PARALLEL_DIGEST_THRESHOLD_MB = 32;
+    static final int V3_MIN_SDK_VERSION = 28;
+
+    /**
+     * Rely on the alignment apksig applies while signing instead of zipalign, as
+     * {@link SignApksBuilder#setInternalZipalign(boolean)} describes.
+     */
+    final boolean alignInProcess;
+    /**
+     * The page size in KB to align uncompressed native libraries to and to verify the signed APK against, or zero
+     * if the APK is not aligned.
+     */
+    int pageAlignmentKb = 0;
+    ApkIoMode ioMode = ApkIoMode.RANDOM_ACCESS_FILE;
+    /**
+     * The number of threads to compute the content digests of one APK with, or zero for an equal share of the
+     * processors among the APKs signed at the same time.
+     */
+    int digestThreads = 0;
+    long parallelDigestThresholdBytes = DEFAULT_PARALLEL_DIGEST_THRESHOLD_MB * 1024L * 1024L;
+    V1Signing v1Signing = V1Signing.AUTO;
+    boolean v2SigningEnabled = true;
+    boolean v3SigningEnabled = true;
+    boolean v4SigningEnabled = false;
+    /**
+     * Zero means use the minimum SDK version in the APK's manifest.
+     */
+    int minSdkVersion = 0;
+    /**
+     * Zero means no maximum.
+     */
+    int maxSdkVersion = 0;
+
+    SigningOptions(boolean alignInProcess) {
+        this.alignInProcess = alignInProcess;
+    }
+
+    SigningOptions pageAlignmentKb(int x) {
+        pageAlignmentKb = x;
+        return this;
+    }
+
+    SigningOptions ioMode(ApkIoMode x) {
+        ioMode = x;
+        return this;
+    }
+
+    SigningOptions digestThreads(int x) {
+        digestThreads = x;
+        return this;
+    }
+
+    SigningOptions parallelDigestThresholdBytes(long x) {
+        parallelDigestThresholdBytes = x;
+        return this;
+    }
+
+    SigningOptions signatureSchemes(V1Signing v1, boolean v2, boolean v3, boolean v4) {
+        v1Signing = v1;
+        v2SigningEnabled = v2;
+        v3SigningEnabled = v3;
+        v4SigningEnabled = v4;
+        return this;
+    }
+
+    SigningOptions sdkVersions(int min, int max) {
+        minSdkVersion = min;
+        maxSdkVersion = max;
+        return this;
+    }
+
+    /**
+     * Check the settings that do not depend on the APK.
+     */
+    void validate() throws AbortException {
+        if (v1Signing == V1Signing.DISABLED && !v2SigningEnabled && !v3SigningEnabled) {
+            throw new AbortException("no signature scheme enabled: enable v1, v2 or v3 signing");
+        }
+        if (pageAlignmentKb != 0 && !ZipalignTool.PAGE_ALIGNMENTS_KB.contains(pageAlignmentKb)) {
+            throw new AbortException(String.format("native library page alignment must be 4, 16 or 64 KB, not %d KB", pageAlignmentKb));
+        }
+        if (v4SigningEnabled && !v2SigningEnabled && !v3SigningEnabled) {
+            throw new AbortException("v4 signing requires v2 or v3 signing");
+        }
+        if (minSdkVersion > 0 && maxSdkVersion > 0 && minSdkVersion > maxSdkVersion) {
+            throw new AbortException(String.format("minimum SDK version %d is greater than maximum SDK version %d", minSdkVersion, maxSdkVersion));
+        }
+    }
+
+    /**
+     * Check that the enabled signature schemes let every Android version from the given minimum SDK version up to
+     * the {@link #maxSdkVersion maximum SDK version} verify the APK.  The lowest version is the one that matters,
+     * because every later version verifies at least the same schemes.
+     */
+    void validateFor(int minSdkVersion) throws AbortException {
+        boolean v1 = v1Signing.isEnabledFor(minSdkVersion);
+        if (!v1 && !v2SigningEnabled && !v3SigningEnabled) {
+            throw new AbortException(String.format(
+                "no signature scheme enabled for minimum SDK version %d: v1 signing only signs APKs with a minimum SDK version lower than %d, so enable v2 or v3 signing",
+                minSdkVersion, V1Signing.NOT_NEEDED_FROM_SDK_VERSION));
+        }
+        // APK Signature Scheme v2 came with the Android version that stopped needing v1 signatures
+        if (!v1 && minSdkVersion < V1Signing.NOT_NEEDED_FROM_SDK_VERSION) {
+            throw new AbortException(String.format(
+                "v1 signing is disabled, but Android versions before SDK version %d only verify v1 signatures and the minimum SDK version is %d",
+                V1Signing.NOT_NEEDED_FROM_SDK_VERSION, minSdkVersion));
+        }
+        if (!v1 && !v2SigningEnabled && minSdkVersion < V3_MIN_SDK_VERSION) {
+            throw new AbortException(String.format(
+                "v1 and v2 signing are disabled, but Android versions before SDK version %d do not verify v3 signatures and the minimum SDK version is %d",
+                V3_MIN_SDK_VERSION, minSdkVersion));
+        }
+        if (maxSdkVersion > 0 && minSdkVersion > maxSdkVersion) {
+            throw new AbortException(String.format("the APK's minimum SDK version %d is greater than the maximum SDK version %d", minSdkVersion, maxSdkVersion));
+        }
+    }
+
+    List<String> schemesFor(int minSdkVersion) {
+        List<String> schemes = new ArrayList<>(4);
+        if (v1Signing.isEnabledFor(minSdkVersion)) {
+            schemes.add("v1");
+        }
+        if (v2SigningEnabled) {
+            schemes.add("v2");
+        }
+        if (v3SigningEnabled) {
+            schemes.add("v3");
+        }
+        if (v4SigningEnabled) {
+            schemes.add("v4");
+        }
+        return schemes;
+    }
+
+    /**
+     * The settings that determine the bytes of a signed APK besides the input APK and the signing key.
+     */
+    String describeSignatureSettings() {
+        return "v1=" + v1Signing + ",v2=" + v2SigningEnabled + ",v3=" + v3SigningEnabled + ",v4=" + v4SigningEnabled +
+            ",minSdkVersion=" + minSdkVersion + ",maxSdkVersion=" + maxSdkVersion;
+    }
+}
@@ -0,0 +1,234 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The wall time of each phase of one Sign Android APKs step, and the time and bytes each APK took to align and
+ * sign, which {@link SigningReportAction} shows on the build page and exports through the build's remote API.
+ * Phases a step runs more than once, e.g., alignment, which checks the APKs before aligning them, add up.
+ */
+@ExportedBean(defaultVisibility = 2)
+public class SigningReport {
+
+    static final String KEY_LOADING = "keyLoading";
+    static final String MATCHING = "matching";
+    static final String CACHE_LOOKUP = "cacheLookup";
+    static final String ZIPALIGN_ENVIRONMENT = "zipalignEnvironment";
+    static final String ZIPALIGN_DISCOVERY = "zipalignDiscovery";
+    static final String ALIGNMENT = "alignment";
+    static final String SIGNING = "signing";
+    static final String ARCHIVING = "archiving";
+
+    @ExportedBean(defaultVisibility = 3)
+    public static class Phase {
+
+        private final String name;
+        private long millis;
+
+        Phase(String name, long millis) {
+            this.name = name;
+            this.millis = millis;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    @ExportedBean(defaultVisibility = 3)
+    public static class ApkTiming {
+
+        private final String unsignedApk;
+        private final long unsignedApkBytes;
+        private final boolean cached;
+        private final long alignMillis;
+        private final long signMillis;
+        private final long bytesRead;
+        private final long bytesWritten;
+
+        ApkTiming(String unsignedApk, long unsignedApkBytes, boolean cached, long alignMillis, long signMillis, long bytesRead, long bytesWritten) {
+            this.unsignedApk = unsignedApk;
+            this.unsignedApkBytes = unsignedApkBytes;
+            this.cached = cached;
+            this.alignMillis = alignMillis;
+            this.signMillis = signMillis;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+        }
+
+        /**
+         * The unsigned APK's path relative to the workspace.
+         */
+        @Exported
+        public String getUnsignedApk() {
+            return unsignedApk;
+        }
+
+        @Exported
+        public long getUnsignedApkBytes() {
+            return unsignedApkBytes;
+        }
+
+        /**
+         * Whether the step used a signed APK from the {@link SignedApkCache} instead of aligning and signing.
+         */
+        @Exported
+        public boolean isCached() {
+            return cached;
+        }
+
+        /**
+         * The time {@code zipalign} took, zero when the step aligned while signing or did not align.
+         */
+        @Exported
+        public long getAlignMillis() {
+            return alignMillis;
+        }
+
+        @Exported
+        public long getSignMillis() {
+            return signMillis;
+        }
+
+        @Exported
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        @Exported
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * The MB of unsigned APK signed per second, or zero if the APK was cached or signing took no measurable time.
+         */
+        @Exported
+        public double getMegabytesPerSecond() {
+            return signMillis > 0 ? unsignedApkBytes / (1024.0 * 1024.0) / (signMillis / 1000.0) : 0;
+        }
+    }
+
+    private final String keyStoreId;
+    private final String keyAlias;
+    private final String apksToSign;
+    private final List<Phase> phases = new ArrayList<>();
+    private final List<ApkTiming> apks = new ArrayList<>();
+    private long totalMillis;
+    private boolean failed;
+    private transient String runningPhase;
+    private String failedPhase;
+
+    SigningReport(String keyStoreId, String keyAlias, String apksToSign) {
+        this.keyStoreId = keyStoreId;
+        this.keyAlias = keyAlias;
+        this.apksToSign = apksToSign;
+    }
+
+    @Exported
+    public String getKeyStoreId() {
+        return keyStoreId;
+    }
+
+    @Exported
+    public String getKeyAlias() {
+        return keyAlias;
+    }
+
+    @Exported
+    public String getApksToSign() {
+        return apksToSign;
+    }
+
+    /**
+     * The phases in the order the step first ran them.
+     */
+    @Exported
+    public synchronized List<Phase> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<>(phases));
+    }
+
+    @Exported
+    public synchronized List<ApkTiming> getApks() {
+        return Collections.unmodifiableList(new ArrayList<>(apks));
+    }
+
+    @Exported
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * Whether the step failed, in which case the report only covers the phases up to the failure.
+     */
+    @Exported
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * The phase the step was running when it failed, or null if it did not fail or failed between phases, e.g.,
+     * on invalid signing settings.
+     */
+    @Exported
+    public String getFailedPhase() {
+        return failedPhase;
+    }
+
+    /**
+     * Mark the given phase as running, so a failure before {@link #phase(String, long)} or {@link #end()} is
+     * attributed to it.
+     *
+     * @return the {@link System#nanoTime()} the phase started at
+     */
+    synchronized long start(String name) {
+        runningPhase = name;
+        return System.nanoTime();
+    }
+
+    /**
+     * Add the time since {@code startNanos}, from {@link System#nanoTime()}, to the given phase, and end it.
+     */
+    void phase(String name, long startNanos) {
+        phaseMillis(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        end();
+    }
+
+    synchronized void end() {
+        runningPhase = null;
+    }
+
+    synchronized void phaseMillis(String name, long millis) {
+        for (Phase phase : phases) {
+            if (phase.name.equals(name)) {
+                phase.millis += millis;
+                return;
+            }
+        }
+        phases.add(new Phase(name, millis));
+    }
+
+    synchronized void apk(ApkTiming apk) {
+        apks.add(apk);
+    }
+
+    synchronized void finish(long startNanos, boolean failed) {
+        this.totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        this.failed = failed;
+        this.failedPhase = failed ? runningPhase : null;
+        this.runningPhase = null;
+    }
+}
@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import hudson.model.Api;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+
+/**
+ * Shows the {@link SigningReport} of each Sign Android APKs step of a build in a table on the build page and at
+ * {@code signingReport/}, and exports them as JSON or XML at {@code signingReport/api/}.
+ */
+@ExportedBean
+public class SigningReportAction implements RunAction2 {
+
+    private final List<SigningReport> steps = new ArrayList<>();
+    private transient Run<?, ?> run;
+
+    /**
+     * Add the report of a step to the build's action, adding the action if this is the build's first report.
+     */
+    static void addTo(Run<?, ?> run, SigningReport report) {
+        SigningReportAction action;
+        synchronized (run) {
+            action = run.getAction(SigningReportAction.class);
+            if (action == null) {
+                action = new SigningReportAction();
+                run.addAction(action);
+            }
+        }
+        synchronized (action) {
+            action.steps.add(report);
+        }
+    }
+
+    /**
+     * The reports of the build's Sign Android APKs steps, in the order the steps finished.
+     */
+    @Exported(inline = true)
+    public synchronized List<SigningReport> getSteps() {
+        return Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        run = r;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-analytics";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.signingReport_displayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "signingReport";
+    }
+}
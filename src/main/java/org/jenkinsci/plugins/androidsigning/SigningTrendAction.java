@@ -0,0 +1,288 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkins.model.TransientActionFactory;
+
+
+/**
+ * Charts the total signing time, signing throughput and number of signed APKs of a job's recent builds on the job
+ * page and at {@code signingTrend/}, and lists the slowest APK of each build, so a regression after, e.g., a new
+ * version of the Android build tools, a different agent type or a jump in APK size stands out.  The data comes from
+ * the {@link SigningReportAction} each build stores with its other records, not from the build logs.
+ */
+public class SigningTrendAction implements Action {
+
+    /**
+     * The number of most recent builds to chart those with a signing report of, so rendering the job page loads at
+     * most that many build records, however few builds sign APKs.
+     */
+    static final int MAX_BUILDS = 30;
+
+    static final int CHART_WIDTH = 500;
+    static final int CHART_HEIGHT = 120;
+
+    /**
+     * The signing reports of one build, summed over all its Sign Android APKs steps.
+     */
+    public static class BuildSummary {
+
+        private final Run<?, ?> run;
+        private long totalMillis;
+        private long signedBytes;
+        private long signMillis;
+        private int apkCount;
+        private String slowestApk;
+        private long slowestApkMillis = -1;
+
+        BuildSummary(Run<?, ?> run, SigningReportAction action) {
+            this.run = run;
+            for (SigningReport step : action.getSteps()) {
+                totalMillis += step.getTotalMillis();
+                for (SigningReport.ApkTiming apk : step.getApks()) {
+                    apkCount++;
+                    if (apk.isCached()) {
+                        continue;
+                    }
+                    signedBytes += apk.getUnsignedApkBytes();
+                    signMillis += apk.getSignMillis();
+                    long apkMillis = apk.getAlignMillis() + apk.getSignMillis();
+                    if (apkMillis > slowestApkMillis) {
+                        slowestApk = apk.getUnsignedApk();
+                        slowestApkMillis = apkMillis;
+                    }
+                }
+            }
+        }
+
+        public Run<?, ?> getRun() {
+            return run;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        /**
+         * The MB of unsigned APKs signed per second of signing, leaving out cached APKs, or zero if the build
+         * signed no APKs.
+         */
+        public double getMegabytesPerSecond() {
+            return signMillis > 0 ? signedBytes / (1024.0 * 1024.0) / (signMillis / 1000.0) : 0;
+        }
+
+        public int getApkCount() {
+            return apkCount;
+        }
+
+        /**
+         * The workspace-relative path of the APK that took longest to align and sign, or null if the build only
+         * used cached APKs.
+         */
+        public String getSlowestApk() {
+            return slowestApk;
+        }
+
+        public long getSlowestApkMillis() {
+            return Math.max(slowestApkMillis, 0);
+        }
+    }
+
+    /**
+     * One metric of the builds, scaled to an SVG line chart {@link #CHART_WIDTH} by {@link #CHART_HEIGHT} units.
+     */
+    public static class Chart {
+
+        private final String title;
+        private final String unit;
+        private final List<BuildSummary> builds;
+        private final List<Double> values;
+        private final double max;
+
+        Chart(String title, String unit, List<BuildSummary> builds, ToDoubleFunction<BuildSummary> metric) {
+            this.title = title;
+            this.unit = unit;
+            this.builds = builds;
+            this.values = new ArrayList<>(builds.size());
+            double max = 0;
+            for (BuildSummary build : builds) {
+                double value = metric.applyAsDouble(build);
+                values.add(value);
+                max = Math.max(max, value);
+            }
+            this.max = max;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+
+        public String getMaxLabel() {
+            return label(max);
+        }
+
+        /**
+         * The {@code points} attribute of the chart's {@code polyline}.
+         */
+        public String getPolylinePoints() {
+            StringBuilder points = new StringBuilder();
+            for (Point point : getPoints()) {
+                if (points.length() > 0) {
+                    points.append(' ');
+                }
+                points.append(point.x).append(',').append(point.y);
+            }
+            return points.toString();
+        }
+
+        public List<Point> getPoints() {
+            List<Point> points = new ArrayList<>(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                double x = values.size() > 1 ? (double) i * CHART_WIDTH / (values.size() - 1) : CHART_WIDTH / 2.0;
+                double y = max > 0 ? CHART_HEIGHT - values.get(i) * CHART_HEIGHT / max : CHART_HEIGHT;
+                Run<?, ?> run = builds.get(i).getRun();
+                points.add(new Point(coordinate(x), coordinate(y), Messages.signingTrend_pointLabel(run.getDisplayName(), label(values.get(i)), unit), run.getNumber()));
+            }
+            return points;
+        }
+
+        private static String label(double value) {
+            return value == Math.rint(value) ? String.format(Locale.ROOT, "%,d", (long) value) : String.format(Locale.ROOT, "%,.1f", value);
+        }
+
+        private static String coordinate(double value) {
+            return String.format(Locale.ROOT, "%.1f", value);
+        }
+    }
+
+    public static class Point {
+
+        private final String x;
+        private final String y;
+        private final String label;
+        private final int buildNumber;
+
+        Point(String x, String y, String label, int buildNumber) {
+            this.x = x;
+            this.y = y;
+            this.label = label;
+            this.buildNumber = buildNumber;
+        }
+
+        public String getX() {
+            return x;
+        }
+
+        public String getY() {
+            return y;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+    }
+
+    private final Job<?, ?> job;
+
+    SigningTrendAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    /**
+     * The summaries of the completed builds with a signing report among the {@link #MAX_BUILDS} most recent builds,
+     * oldest first.
+     */
+    public List<BuildSummary> getBuilds() {
+        List<BuildSummary> builds = new ArrayList<>();
+        for (Run<?, ?> run : job.getBuilds().limit(MAX_BUILDS)) {
+            if (run.isBuilding()) {
+                continue;
+            }
+            SigningReportAction action = run.getAction(SigningReportAction.class);
+            if (action != null) {
+                builds.add(new BuildSummary(run, action));
+            }
+        }
+        Collections.reverse(builds);
+        return builds;
+    }
+
+    public List<Chart> getCharts() {
+        List<BuildSummary> builds = getBuilds();
+        List<Chart> charts = new ArrayList<>(3);
+        charts.add(new Chart(Messages.signingTrend_signingTime(), Messages.signingTrend_unit_millis(), builds, BuildSummary::getTotalMillis));
+        charts.add(new Chart(Messages.signingTrend_throughput(), Messages.signingTrend_unit_megabytesPerSecond(), builds, BuildSummary::getMegabytesPerSecond));
+        charts.add(new Chart(Messages.signingTrend_apkCount(), Messages.signingTrend_unit_apks(), builds, BuildSummary::getApkCount));
+        return charts;
+    }
+
+    public int getMaxBuilds() {
+        return MAX_BUILDS;
+    }
+
+    public int getChartWidth() {
+        return CHART_WIDTH;
+    }
+
+    public int getChartHeight() {
+        return CHART_HEIGHT;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "symbol-analytics";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.signingTrend_displayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "signingTrend";
+    }
+
+    /**
+     * Adds the action to jobs whose last completed build has a signing report.
+     */
+    @Extension
+    public static class ActionFactory extends TransientActionFactory<Job> {
+        @Override
+        public Class<Job> type() {
+            return Job.class;
+        }
+
+        @NonNull
+        @Override
+        public Collection<? extends Action> createFor(@NonNull Job target) {
+            Run<?, ?> lastBuild = target.getLastCompletedBuild();
+            if (lastBuild == null || lastBuild.getAction(SigningReportAction.class) == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new SigningTrendAction(target));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.jenkinsci.plugins.androidsigning;
+
+/**
+ * Whether to sign APKs with the v1 (JAR) signature scheme in addition to the APK signature schemes.  Only Android
+ * versions before 7.0 (API level 24) need the v1 signature, and computing it means hashing every entry of the APK,
+ * so {@link #AUTO} only signs with v1 when the APK's minimum SDK version is lower than that.
+ */
+public enum V1Signing {
+
+    AUTO,
+    ENABLED,
+    DISABLED;
+
+    static final int NOT_NEEDED_FROM_SDK_VERSION = 24;
+
+    boolean isEnabledFor(int minSdkVersion) {
+        switch (this) {
+            case ENABLED:
+                return true;
+            case DISABLED:
+                return false;
+            default:
+                return minSdkVersion < NOT_NEEDED_FROM_SDK_VERSION;
+        }
+    }
+
+    public String getDisplayName() {
+        switch (this) {
+            case ENABLED:
+                return Messages.v1Signing_enabled_displayName();
+            case DISABLED:
+                return Messages.v1Signing_disabled_displayName();
+            default:
+                return Messages.v1Signing_auto_displayName();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.util.Collection;
+
+import hudson.model.Action;
+import hudson.model.Computer;
+import jenkins.model.Jenkins;
+
+
+/**
+ * Shows administrators the zipalign locations {@link ZipalignLocationCache} remembers for a computer, and lets them
+ * flush the cache, e.g., after installing a new version of the Android build tools.
+ */
+public class ZipalignCacheAction implements Action {
+
+    private final Computer computer;
+
+    ZipalignCacheAction(Computer computer) {
+        this.computer = computer;
+    }
+
+    public Computer getComputer() {
+        return computer;
+    }
+
+    public Collection<ZipalignLocationCache.Entry> getEntries() {
+        computer.checkPermission(Jenkins.ADMINISTER);
+        return ZipalignLocationCache.entries(computer);
+    }
+
+    @RequirePOST
+    public HttpResponse doFlush() {
+        computer.checkPermission(Jenkins.ADMINISTER);
+        ZipalignLocationCache.flush(computer);
+        return HttpResponses.redirectToDot();
+    }
+
+    @Override
+    public String getIconFileName() {
+        return computer.hasPermission(Jenkins.ADMINISTER) ? "symbol-search" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.zipalignCache_displayName();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "zipalignCache";
+    }
+}
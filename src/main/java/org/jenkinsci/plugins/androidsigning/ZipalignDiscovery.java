@@ -0,0 +1,248 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.util.VersionNumber;
+
+
+/**
+ * Searches for zipalign in the locations the zipalign settings and environment variables of a Sign APKs step
+ * describe.  A {@link Probe} performs the file system checks, so the same search can run on the agent with
+ * {@link java.nio.file} through {@link FindZipalignCallable}, or on the controller with processes the build's
+ * launcher starts through {@link ZipalignTool}.
+ */
+class ZipalignDiscovery {
+
+    interface Probe {
+        boolean isDirectory(FilePath path) throws IOException, InterruptedException;
+        boolean isFile(FilePath path) throws IOException, InterruptedException;
+        List<FilePath> listDirectories(FilePath parent) throws IOException, InterruptedException;
+        String pathSeparator() throws IOException, InterruptedException;
+    }
+
+    private final Probe probe;
+    private final FilePath workspace;
+    private final PrintStream logger;
+
+    ZipalignDiscovery(Probe probe, FilePath workspace, PrintStream logger) {
+        this.probe = probe;
+        this.workspace = workspace;
+        this.logger = logger;
+    }
+
+    /**
+     * All arguments are already expanded with the build environment.
+     */
+    @Nullable
+    FilePath find(@Nullable String overrideZipalignPath, @Nullable String overrideAndroidHome,
+        @Nullable String envZipalignPath, @Nullable String envAndroidHome, @Nullable String envPath) throws AbortException {
+
+        if (!StringUtils.isEmpty(overrideZipalignPath)) {
+            logger.printf("[SignApksBuilder] zipalign path explicitly set to %s%n", overrideZipalignPath);
+            return zipalignOrZipalignExe(workspace.child(overrideZipalignPath));
+        }
+        if (!StringUtils.isEmpty(overrideAndroidHome)) {
+            logger.printf("[SignApksBuilder] zipalign %s explicitly set to %s%n", ZipalignTool.ENV_ANDROID_HOME, overrideAndroidHome);
+            return findInAndroidHome(overrideAndroidHome);
+        }
+        return findFromEnv(envZipalignPath, envAndroidHome, envPath);
+    }
+
+    private FilePath findFromEnv(String zipalignPath, String androidHome, String envPath) throws AbortException {
+
+        if (!StringUtils.isEmpty(zipalignPath)) {
+            logger.printf("[SignApksBuilder] found zipalign path in env %s=%s%n", ZipalignTool.ENV_ZIPALIGN_PATH, zipalignPath);
+            FilePath zipalign = new FilePath(workspace.getChannel(), zipalignPath);
+            return zipalignOrZipalignExe(zipalign);
+        }
+
+        if (!StringUtils.isEmpty(androidHome)) {
+            logger.printf("[SignApksBuilder] searching environment variable %s=%s for zipalign...%n", ZipalignTool.ENV_ANDROID_HOME, androidHome);
+            return findInAndroidHome(androidHome);
+        }
+
+        if (!StringUtils.isEmpty(envPath)) {
+            logger.printf("[SignApksBuilder] searching environment %s=%s for zipalign...%n", ZipalignTool.ENV_PATH, envPath);
+            return findInPathEnvVar(envPath);
+        }
+
+        throw new AbortException("failed to find zipalign: no environment variable " +
+            ZipalignTool.ENV_ZIPALIGN_PATH + " or " + ZipalignTool.ENV_ANDROID_HOME + " or " + ZipalignTool.ENV_PATH);
+    }
+
+    private FilePath findInAndroidHome(String androidHome) throws AbortException {
+
+        FilePath buildTools = workspace.child(androidHome).child("build-tools");
+        List<FilePath> versionDirs;
+        try {
+            versionDirs = probe.listDirectories(buildTools);
+        }
+        catch (Exception e) {
+            e.printStackTrace(logger);
+            throw new AbortException(String.format(
+                "failed to find zipalign: error listing build-tools versions in %s: %s",
+                buildTools.getRemote(), e.getLocalizedMessage()));
+        }
+
+        if (versionDirs == null || versionDirs.isEmpty()) {
+            throw new AbortException("failed to find zipalign: no build-tools directory in Android home path " + androidHome);
+        }
+
+        SortedMap<VersionNumber, FilePath> versions = new TreeMap<>();
+        for (FilePath versionDir : versionDirs) {
+            String versionName = versionDir.getName();
+            VersionNumber version = new VersionNumber(versionName);
+            versions.put(version, versionDir);
+        }
+
+        if (versions.isEmpty()) {
+            throw new AbortException(
+                "failed to find zipalign: no build-tools versions in Android home path " + buildTools);
+        }
+
+        VersionNumber latest = versions.lastKey();
+        buildTools = versions.get(latest);
+        FilePath zipalign = zipalignOrZipalignExe(buildTools);
+        if (zipalign != null) {
+            logger.printf("[SignApksBuilder] found zipalign in Android SDK's latest build tools: %s%n", zipalign.getRemote());
+            return zipalign;
+        }
+
+        throw new AbortException("failed to find zipalign: no zipalign found in latest Android build tools: " + buildTools);
+    }
+
+    private FilePath findInPathEnvVar(String envPath) {
+        String separator;
+        try {
+            separator = probe.pathSeparator();
+        }
+        catch (Exception e) {
+            logger.println("[SignApksBuilder] error determining path separator:");
+            e.printStackTrace(logger);
+            return null;
+        }
+        String[] dirs = envPath.split(separator);
+        for (String dir : dirs) {
+            FilePath dirPath = workspace.child(dir);
+            logger.printf("[SignApksBuilder] checking %s dir %s for zipalign...%n", ZipalignTool.ENV_PATH, dirPath.getRemote());
+            FilePath zipalign = zipalignOrZipalignExe(dirPath);
+            if (zipalign != null) {
+                return zipalign;
+            }
+            try {
+                dirPath = androidHomeAncestorOfPath(dirPath);
+            }
+            catch (Exception e) {
+                logger.println("error searching " + ZipalignTool.ENV_PATH + " environment variable: " + e.getMessage());
+                e.printStackTrace(logger);
+            }
+            if (dirPath != null) {
+                logger.printf("[SignApksBuilder] found potential Android home in %s dir %s%n", ZipalignTool.ENV_PATH, dir);
+                try {
+                    return findInAndroidHome(dirPath.getRemote());
+                }
+                catch (AbortException e) {
+                    logger.printf("error searching Android home found in " + ZipalignTool.ENV_PATH + ": " + e.getMessage());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private FilePath androidHomeAncestorOfPath(FilePath path) {
+        if ("bin".equals(path.getName())) {
+            FilePath sdkmanager = path.child("sdkmanager");
+            if (commandOrWinCommandAtPath(sdkmanager) != null) {
+                path = path.getParent();
+                if (path != null && "tools".equals(path.getName())) {
+                    return path.getParent();
+                }
+            }
+        }
+        else if ("tools".equals(path.getName())) {
+            FilePath androidTool = path.child("android");
+            if (commandOrWinCommandAtPath(androidTool) != null) {
+                return path.getParent();
+            }
+        }
+        else {
+            FilePath androidTool = path.child("tools").child("android");
+            if (commandOrWinCommandAtPath(androidTool) != null) {
+                return path;
+            }
+        }
+
+        return null;
+    }
+
+    FilePath zipalignOrZipalignExe(FilePath zipalignOrDir) {
+        FilePath parent = zipalignOrDir.getParent();
+        try {
+            if (probe.isDirectory(zipalignOrDir)) {
+                parent = zipalignOrDir;
+                zipalignOrDir = zipalignOrDir.child("zipalign");
+            }
+        }
+        catch (Exception e) {
+            logger.println("[SignApksBuilder] error checking for zipalign at path " + zipalignOrDir);
+            e.printStackTrace(logger);
+        }
+        zipalignOrDir = commandOrWinCommandAtPath(zipalignOrDir);
+        if (zipalignOrDir != null) {
+            return zipalignOrDir;
+        }
+
+        logger.println("[SignApksBuilder] no zipalign or zipalign.exe found in path " + parent);
+        return null;
+    }
+
+    private FilePath commandOrWinCommandAtPath(FilePath path) {
+        try {
+            if (probe.isDirectory(path)) {
+                return null;
+            }
+
+            if (probe.isFile(path)) {
+                return path;
+            }
+
+            FilePath parent = path.getParent();
+            if (parent == null) {
+                return null;
+            }
+
+            if (!probe.isDirectory(parent)) {
+                return null;
+            }
+
+            String name = path.getName();
+            String winCommand = name + ".exe";
+            path = parent.child(winCommand);
+            if (probe.isFile(path)) {
+                return path;
+            }
+            winCommand = name + ".bat";
+            path = parent.child(winCommand);
+            if (probe.isFile(path)) {
+                return path;
+            }
+        }
+        catch (Exception e) {
+            logger.println("[SignApksBuilder] error checking path " + path);
+            e.printStackTrace(logger);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Computer;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+import jenkins.model.TransientActionFactory;
+
+
+/**
+ * Remembers where {@link ZipalignTool} found zipalign on each {@link Computer}, so later Sign APKs steps on the same
+ * computer with the same zipalign settings and environment only need to check that the remembered file still
+ * exists, instead of searching the Android SDK and {@code PATH} again.  Administrators can see and flush the
+ * cache of each computer through its {@link ZipalignCacheAction}.
+ */
+final class ZipalignLocationCache {
+
+    public static class Entry {
+
+        private final String inputs;
+        private final String zipalignPath;
+        private final long cachedAt;
+
+        Entry(String inputs, String zipalignPath, long cachedAt) {
+            this.inputs = inputs;
+            this.zipalignPath = zipalignPath;
+            this.cachedAt = cachedAt;
+        }
+
+        public String getInputs() {
+            return inputs;
+        }
+
+        public String getZipalignPath() {
+            return zipalignPath;
+        }
+
+        public Date getCachedDate() {
+            return new Date(cachedAt);
+        }
+    }
+
+    private static final Map<Computer, Map<String, Entry>> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ZipalignLocationCache() {
+    }
+
+    /**
+     * @return a description of all the settings and environment variables that determine where {@link ZipalignTool}
+     * searches for zipalign, which serves as the cache key
+     */
+    static String inputsFor(@Nullable String overrideZipalignPath, @Nullable String overrideAndroidHome, @NonNull EnvVars env) {
+        List<String> inputs = new ArrayList<>();
+        if (!StringUtils.isEmpty(overrideZipalignPath)) {
+            inputs.add("zipalignPath=" + env.expand(overrideZipalignPath));
+        }
+        if (!StringUtils.isEmpty(overrideAndroidHome)) {
+            inputs.add("androidHome=" + env.expand(overrideAndroidHome));
+        }
+        for (String var : new String[] { ZipalignTool.ENV_ZIPALIGN_PATH, ZipalignTool.ENV_ANDROID_HOME, ZipalignTool.ENV_PATH }) {
+            String value = env.get(var);
+            if (!StringUtils.isEmpty(value)) {
+                inputs.add(var + "=" + env.expand(value));
+            }
+        }
+        return StringUtils.join(inputs, "\n");
+    }
+
+    @Nullable
+    static String get(@NonNull Computer computer, @NonNull String inputs) {
+        Map<String, Entry> cache = CACHES.get(computer);
+        Entry entry = cache == null ? null : cache.get(inputs);
+        return entry == null ? null : entry.zipalignPath;
+    }
+
+    static void put(@NonNull Computer computer, @NonNull String inputs, @NonNull String zipalignPath) {
+        CACHES.computeIfAbsent(computer, c -> new ConcurrentHashMap<>())
+            .put(inputs, new Entry(inputs, zipalignPath, System.currentTimeMillis()));
+    }
+
+    static void remove(@NonNull Computer computer, @NonNull String inputs) {
+        Map<String, Entry> cache = CACHES.get(computer);
+        if (cache != null) {
+            cache.remove(inputs);
+        }
+    }
+
+    static Collection<Entry> entries(@NonNull Computer computer) {
+        Map<String, Entry> cache = CACHES.get(computer);
+        if (cache == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(cache.values());
+    }
+
+    static void flush(@NonNull Computer computer) {
+        CACHES.remove(computer);
+    }
+
+    /**
+     * An agent that reconnects may have a different Android SDK installation.
+     */
+    @Extension
+    public static class FlushOnOffline extends ComputerListener {
+        @Override
+        public void onOffline(@NonNull Computer c, @Nullable OfflineCause cause) {
+            flush(c);
+        }
+    }
+
+    @Extension
+    public static class ActionFactory extends TransientActionFactory<Computer> {
+        @Override
+        public Class<Computer> type() {
+            return Computer.class;
+        }
+
+        @NonNull
+        @Override
+        public Collection<? extends Action> createFor(@NonNull Computer target) {
+            return Collections.singletonList(new ZipalignCacheAction(target));
+        }
+    }
+}
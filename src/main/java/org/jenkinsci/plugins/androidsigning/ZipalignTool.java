@@ -8,9 +8,9 @@ import java.nio.charset.Charset;
 import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -20,8 +20,8 @@ import hudson.AbortException;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.model.Computer;
 import hudson.util.ArgumentListBuilder;
-import hudson.util.VersionNumber;
 
 
 class ZipalignTool {
@@ -29,292 +29,136 @@ class ZipalignTool {
     static final String ENV_ANDROID_HOME = "ANDROID_HOME";
     static final String ENV_ZIPALIGN_PATH = "ANDROID_ZIPALIGN";
     static final String ENV_PATH = "PATH";
+    static final int DEFAULT_PAGE_ALIGNMENT_KB = 16;
+    /**
+     * The page sizes {@code zipalign -P} accepts.
+     */
+    static final List<Integer> PAGE_ALIGNMENTS_KB = Collections.unmodifiableList(Arrays.asList(4, 16, 64));
+    static final int ZIP_ALIGNMENT = 4;
+
+    /**
+     * Checks paths with processes the build's launcher starts, for environments where the launcher's decoration
+     * changes what the file system looks like, e.g., a container.
+     */
+    private class LauncherProbe implements ZipalignDiscovery.Probe {
+
+        @Override
+        public List<FilePath> listDirectories(FilePath parentPath) throws IOException, InterruptedException {
+            ArgumentListBuilder cmds = new ArgumentListBuilder();
+            Launcher decorated = launcher.decorateByEnv(buildEnv);
+
+            if (launcher.isUnix()) {
+                cmds.add("find", parentPath.getRemote(), "-mindepth", "1", "-type", "d");
+            } else {
+                cmds.add("dir", "/c", "/s", "/ad", "/b", parentPath.getRemote());
+                cmds = cmds.toWindowsCommand();
+            }
 
-    private FilePath findFromEnv(EnvVars env, FilePath workspace, PrintStream logger) throws AbortException {
-
-        String zipalignPath = env.get(ENV_ZIPALIGN_PATH);
-        if (!StringUtils.isEmpty(zipalignPath)) {
-            zipalignPath = env.expand(zipalignPath);
-            logger.printf("[SignApksBuilder] found zipalign path in env %s=%s%n", ENV_ZIPALIGN_PATH, zipalignPath);
-            FilePath zipalign = new FilePath(workspace.getChannel(), zipalignPath);
-            return zipalignOrZipalignExe(zipalign, logger);
-        }
-
-        String androidHome = env.get(ENV_ANDROID_HOME);
-        if (!StringUtils.isEmpty(androidHome)) {
-            androidHome = env.expand(androidHome);
-            logger.printf("[SignApksBuilder] searching environment variable %s=%s for zipalign...%n", ENV_ANDROID_HOME, androidHome);
-            return findInAndroidHome(androidHome, workspace, logger);
-        }
-
-        String envPath = env.get(ENV_PATH);
-        if (!StringUtils.isEmpty(envPath)) {
-            envPath = env.expand(envPath);
-            logger.printf("[SignApksBuilder] searching environment %s=%s for zipalign...%n", ENV_PATH, envPath);
-            return findInPathEnvVar(envPath, workspace, logger);
-        }
-
-        throw new AbortException("failed to find zipalign: no environment variable " + ENV_ZIPALIGN_PATH + " or " + ENV_ANDROID_HOME + " or " + ENV_PATH);
-    }
-
-    private FilePath findInAndroidHome(String androidHome, FilePath workspace, PrintStream logger) throws AbortException {
-
-        FilePath buildTools = workspace.child(androidHome).child("build-tools");
-        List<FilePath> versionDirs;
-        try {
-            versionDirs = listDirectoriesWithLauncher(buildTools, logger);
-        }
-        catch (Exception e) {
-            e.printStackTrace(logger);
-            throw new AbortException(String.format(
-                "failed to find zipalign: error listing build-tools versions in %s: %s",
-                buildTools.getRemote(), e.getLocalizedMessage()));
-        }
-
-        if (versionDirs == null || versionDirs.isEmpty()) {
-            throw new AbortException("failed to find zipalign: no build-tools directory in Android home path " + androidHome);
-        }
-
-        SortedMap<VersionNumber, FilePath> versions = new TreeMap<>();
-        for (FilePath versionDir : versionDirs) {
-            String versionName = versionDir.getName();
-            VersionNumber version = new VersionNumber(versionName);
-            versions.put(version, versionDir);
-        }
-
-        if (versions.isEmpty()) {
-            throw new AbortException(
-                "failed to find zipalign: no build-tools versions in Android home path " + buildTools);
-        }
-
-        VersionNumber latest = versions.lastKey();
-        buildTools = versions.get(latest);
-        FilePath zipalign = zipalignOrZipalignExe(buildTools, logger);
-        if (zipalign != null) {
-            logger.printf("[SignApksBuilder] found zipalign in Android SDK's latest build tools: %s%n", zipalign.getRemote());
-            return zipalign;
-        }
+            int exitCode = decorated.launch()
+                    .cmds(cmds)
+                    .pwd(workspace)
+                    .stdout(outStream)
+                    .stderr(logger)
+                    .quiet(true)
+                    .join();
 
-        throw new AbortException("failed to find zipalign: no zipalign found in latest Android build tools: " + buildTools);
-    }
-
-    private FilePath findInPathEnvVar(String envPath, FilePath workspace, PrintStream logger) throws AbortException {
-        String separator = null;
-        try {
-            separator = pathSeparatorForWorkspace(workspace);
-        }
-        catch (Exception e) {
-            logger.println("[SignApksBuilder] error determining path separator:");
-            e.printStackTrace(logger);
-            return null;
-        }
-        String[] dirs = envPath.split(separator);
-        for (String dir : dirs) {
-            FilePath dirPath = workspace.child(dir);
-            logger.printf("[SignApksBuilder] checking %s dir %s for zipalign...%n", ENV_PATH, dirPath.getRemote());
-            FilePath zipalign = zipalignOrZipalignExe(dirPath, logger);
-            if (zipalign != null) {
-                return zipalign;
+            if (exitCode != 0) {
+                return new ArrayList<>();
             }
-            try {
-                dirPath = androidHomeAncestorOfPath(dirPath, logger);
-            }
-            catch (Exception e) {
-                logger.println("error searching " + ENV_PATH + " environment variable: " + e.getMessage());
-                e.printStackTrace(logger);
-            }
-            if (dirPath != null) {
-                logger.printf("[SignApksBuilder] found potential Android home in %s dir %s%n", ENV_PATH, dir);
-                try {
-                    return findInAndroidHome(dirPath.getRemote(), workspace, logger);
-                }
-                catch (AbortException e) {
-                    logger.printf("error searching Android home found in " + ENV_PATH + ": " + e.getMessage());
-                }
-            }
-        }
 
-        return null;
-    }
+            String result = outStream.toString(Charset.defaultCharset()).trim();
 
-    private static String pathSeparatorForWorkspace(FilePath workspace) throws IOException, InterruptedException {
-        return workspace.act(new GetPathSeparator());
-    }
+            logger.println("[SignApksBuilder] Directories " + outStream.toString(Charset.defaultCharset()));
 
-    private FilePath androidHomeAncestorOfPath(FilePath path, PrintStream logger) throws Exception {
-        if ("bin".equals(path.getName())) {
-            FilePath sdkmanager = path.child("sdkmanager");
-            if (commandOrWinCommandAtPath(sdkmanager, logger) != null) {
-                path = path.getParent();
-                if (path != null && "tools".equals(path.getName())) {
-                    return path.getParent();
-                }
-            }
-        }
-        else if ("tools".equals(path.getName())) {
-            FilePath androidTool = path.child("android");
-            if (commandOrWinCommandAtPath(androidTool, logger) != null) {
-                return path.getParent();
+            if (result.isEmpty()) {
+                return new ArrayList<>();
             }
-        }
-        else {
-            FilePath androidTool = path.child("tools").child("android");
-            if (commandOrWinCommandAtPath(androidTool, logger) != null) {
-                return path;
-            }
-        }
-
-        return null;
-    }
 
-    private FilePath zipalignOrZipalignExe(FilePath zipalignOrDir, PrintStream logger) {
-        FilePath parent = zipalignOrDir.getParent();
-        try {
-            if (isDirectoryWithLauncher(zipalignOrDir, logger)) {
-                parent = zipalignOrDir;
-                zipalignOrDir = zipalignOrDir.child("zipalign");
-            }
-        }
-        catch (Exception e) {
-            logger.println("[SignApksBuilder] error checking for zipalign at path " + zipalignOrDir);
-            e.printStackTrace(logger);
-        }
-        zipalignOrDir = commandOrWinCommandAtPath(zipalignOrDir, logger);
-        if (zipalignOrDir != null) {
-            return zipalignOrDir;
+            return Arrays.stream(result.split("\\R"))
+                    .filter(p -> !p.trim().isEmpty())
+                    .map(p -> new FilePath(parentPath, p))
+                    .collect(Collectors.toList());
         }
 
-        logger.println("[SignApksBuilder] no zipalign or zipalign.exe found in path " + parent);
-        return null;
-    }
+        @Override
+        public boolean isDirectory(FilePath filePath) throws IOException, InterruptedException {
+            ArgumentListBuilder cmds = new ArgumentListBuilder();
+            Launcher decorated = launcher.decorateByEnv(buildEnv);
 
-    private List<FilePath> listDirectoriesWithLauncher(FilePath parentPath, PrintStream logger) throws IOException, InterruptedException {
-        ArgumentListBuilder cmds = new ArgumentListBuilder();
-        Launcher decorated = launcher.decorateByEnv(buildEnv);
+            if (launcher.isUnix()) {
+                cmds.add("test", "-d", filePath.getRemote());
+            } else {
+                cmds.add("dir", "/c", "/ad", "/b", filePath.getRemote());
+                cmds = cmds.toWindowsCommand();
+            }
 
-        if (launcher.isUnix()) {
-            cmds.add("find", parentPath.getRemote(), "-mindepth", "1", "-type", "d");
-        } else {
-            cmds.add("dir", "/c", "/s", "/ad", "/b", parentPath.getRemote());
-            cmds = cmds.toWindowsCommand();
-        }
+            int exitCode = decorated.launch()
+                    .cmds(cmds)
+                    .pwd(workspace)
+                    .stdout(outStream)
+                    .stderr(logger)
+                    .quiet(true)
+                    .join();
 
-        int exitCode = decorated.launch()
-                .cmds(cmds)
-                .pwd(workspace)
-                .stdout(outStream)
-                .stderr(logger)
-                .quiet(true)
-                .join();
+            if (exitCode == 0) {
+                logger.printf("[SignApksBuilder] is Directory %s%n", outStream.toString(Charset.defaultCharset()));
+            }
 
-        if (exitCode != 0) {
-            return new ArrayList<>();
+            return exitCode == 0;
         }
 
-        String result = outStream.toString(Charset.defaultCharset()).trim();
+        @Override
+        public boolean isFile(FilePath filePath) throws IOException, InterruptedException {
+            ArgumentListBuilder cmds = new ArgumentListBuilder();
+            Launcher decorated = launcher.decorateByEnv(buildEnv);
 
-        logger.println("[SignApksBuilder] Directories " + outStream.toString(Charset.defaultCharset()));
+            if (launcher.isUnix()) {
+                cmds.add("test", "-f", filePath.getRemote());
+            } else {
+                cmds.add("dir", "/a-d", "/b", filePath.getRemote());
+                cmds = cmds.toWindowsCommand();
+            }
 
-        if (result.isEmpty()) {
-            return new ArrayList<>();
-        }
+            int exitCode = decorated.launch()
+                    .cmds(cmds)
+                    .pwd(workspace)
+                    .stdout(outStream)
+                    .stderr(logger)
+                    .quiet(true)
+                    .join();
 
-        return Arrays.stream(result.split("\\R"))
-                .filter(p -> !p.trim().isEmpty())
-                .map(p -> new FilePath(parentPath, p))
-                .collect(Collectors.toList());
-    }
+            String result = outStream.toString(Charset.defaultCharset());
 
-    private boolean isDirectoryWithLauncher(FilePath filePath, PrintStream logger) throws IOException, InterruptedException {
-        ArgumentListBuilder cmds = new ArgumentListBuilder();
-        Launcher decorated = launcher.decorateByEnv(buildEnv);
+            if (exitCode == 0) {
+                logger.printf("[SignApksBuilder] is File %s%n", result);
+            }
 
-        if (launcher.isUnix()) {
-            cmds.add("test", "-d", filePath.getRemote());
-        } else {
-            cmds.add("dir", "/c", "/ad", "/b", filePath.getRemote());
-            cmds = cmds.toWindowsCommand();
+            return exitCode == 0;
         }
 
-        int exitCode = decorated.launch()
-                .cmds(cmds)
-                .pwd(workspace)
-                .stdout(outStream)
-                .stderr(logger)
-                .quiet(true)
-                .join();
-
-        if (exitCode == 0) {
-            logger.printf("[SignApksBuilder] is Directory %s%n", outStream.toString(Charset.defaultCharset()));
+        @Override
+        public String pathSeparator() throws IOException, InterruptedException {
+            return workspace.act(new GetPathSeparator());
         }
-
-        return exitCode == 0;
     }
 
-    private boolean fileExistsWithLauncher(FilePath filePath, PrintStream logger) throws IOException, InterruptedException {
-        ArgumentListBuilder cmds = new ArgumentListBuilder();
-        Launcher decorated = launcher.decorateByEnv(buildEnv);
-
-        if (launcher.isUnix()) {
-            cmds.add("test", "-f", filePath.getRemote());
-        } else {
-            cmds.add("dir", "/a-d", "/b", filePath.getRemote());
-            cmds = cmds.toWindowsCommand();
-        }
-
-        int exitCode = decorated.launch()
-                .cmds(cmds)
-                .pwd(workspace)
-                .stdout(outStream)
-                .stderr(logger)
-                .quiet(true)
-                .join();
-
-        String result = outStream.toString(Charset.defaultCharset());
-
-        if (exitCode == 0) {
-            logger.printf("[SignApksBuilder] is File %s%n", result);
-        }
-
-        return exitCode == 0;
+    private String expand(String value) {
+        return StringUtils.isEmpty(value) ? value : buildEnv.expand(value);
     }
 
-    private FilePath commandOrWinCommandAtPath(FilePath path, PrintStream logger) {
+    private FilePath cachedZipalignWithLauncher(String cachedPath) {
+        FilePath cached = workspace.child(cachedPath);
         try {
-            if (isDirectoryWithLauncher(path, logger)) {
-                return null;
-            }
-
-            if (fileExistsWithLauncher(path, logger)) {
-                return path;
-            }
-
-            FilePath parent = path.getParent();
-            if (parent == null) {
-                return null;
-            }
-
-            if (!isDirectoryWithLauncher(parent, logger)) {
-                return null;
-            }
-
-            String name = path.getName();
-            String winCommand = name + ".exe";
-            path = parent.child(winCommand);
-            if (fileExistsWithLauncher(path, logger)) {
-                return path;
-            }
-            winCommand = name + ".bat";
-            path = parent.child(winCommand);
-            if (fileExistsWithLauncher(path, logger)) {
-                return path;
+            if (new LauncherProbe().isFile(cached)) {
+                logger.printf("[SignApksBuilder] using cached zipalign path %s%n", cachedPath);
+                return cached;
             }
         }
         catch (Exception e) {
-            logger.println("[SignApksBuilder] error checking path " + path);
+            logger.println("[SignApksBuilder] error checking cached zipalign path " + cachedPath);
             e.printStackTrace(logger);
         }
-
+        logger.printf("[SignApksBuilder] cached zipalign path %s no longer exists%n", cachedPath);
         return null;
     }
 
@@ -324,10 +168,18 @@ class ZipalignTool {
     private final PrintStream logger;
     private final String overrideAndroidHome;
     private final String overrideZipalignPath;
+    private final boolean searchWithLauncher;
     private final ByteArrayOutputStream outStream;
     private FilePath zipalign;
-
-    ZipalignTool(@NonNull Launcher launcher, @NonNull ByteArrayOutputStream outStream, @NonNull EnvVars buildEnv, @NonNull FilePath workspace, @NonNull PrintStream logger, @Nullable String overrideAndroidHome, @Nullable String overrideZipalignPath) {
+    private int pageAlignmentKb = DEFAULT_PAGE_ALIGNMENT_KB;
+    private long discoveryMillis = 0;
+
+    /**
+     * @param searchWithLauncher search for zipalign with processes the given launcher starts, rather than with one
+     *                           call to the agent that owns the workspace
+     */
+    ZipalignTool(@NonNull Launcher launcher, @NonNull ByteArrayOutputStream outStream, @NonNull EnvVars buildEnv, @NonNull FilePath workspace, @NonNull PrintStream logger,
+        @Nullable String overrideAndroidHome, @Nullable String overrideZipalignPath, boolean searchWithLauncher) {
         this.launcher = launcher;
         this.buildEnv = buildEnv;
         this.workspace = workspace;
@@ -335,34 +187,81 @@ class ZipalignTool {
         this.outStream = outStream;
         this.overrideAndroidHome = overrideAndroidHome;
         this.overrideZipalignPath = overrideZipalignPath;
+        this.searchWithLauncher = searchWithLauncher;
+    }
+
+    /**
+     * @param x the page size in KB to align uncompressed native libraries to, one of {@link #PAGE_ALIGNMENTS_KB}
+     */
+    ZipalignTool pageAlignmentKb(int x) {
+        pageAlignmentKb = x;
+        return this;
     }
 
-    ArgumentListBuilder commandFor(String unsignedApk, String outputApk) throws AbortException {
+    /**
+     * @return the time {@link #commandFor(String, String)} took to find zipalign, including checking a cached
+     *         location, or zero until it has
+     */
+    synchronized long getDiscoveryMillis() {
+        return discoveryMillis;
+    }
+
+    synchronized ArgumentListBuilder commandFor(String unsignedApk, String outputApk) throws IOException, InterruptedException {
         if (zipalign == null) {
-            if (!StringUtils.isEmpty(overrideZipalignPath)) {
-                logger.printf("[SignApksBuilder] zipalign path explicitly set to %s%n", overrideZipalignPath);
-                zipalign = zipalignOrZipalignExe(workspace.child(buildEnv.expand(overrideZipalignPath)), logger);
-            }
-            else if (!StringUtils.isEmpty(overrideAndroidHome)) {
-                logger.printf("[SignApksBuilder] zipalign %s explicitly set to %s%n", ENV_ANDROID_HOME, overrideAndroidHome);
-                String expandedAndroidHome = buildEnv.expand(overrideAndroidHome);
-                zipalign = findInAndroidHome(expandedAndroidHome, workspace, this.logger);
+            long start = System.nanoTime();
+            Computer computer = workspace.toComputer();
+            String cacheInputs = computer == null ? null : ZipalignLocationCache.inputsFor(overrideZipalignPath, overrideAndroidHome, buildEnv);
+            String cachedPath = computer == null ? null : ZipalignLocationCache.get(computer, cacheInputs);
+            boolean cached = false;
+            String failure = null;
+            if (searchWithLauncher) {
+                if (cachedPath != null) {
+                    zipalign = cachedZipalignWithLauncher(cachedPath);
+                    cached = zipalign != null;
+                }
+                if (zipalign == null) {
+                    ZipalignDiscovery discovery = new ZipalignDiscovery(new LauncherProbe(), workspace, logger);
+                    zipalign = discovery.find(expand(overrideZipalignPath), expand(overrideAndroidHome),
+                        expand(buildEnv.get(ENV_ZIPALIGN_PATH)), expand(buildEnv.get(ENV_ANDROID_HOME)), expand(buildEnv.get(ENV_PATH)));
+                }
             }
             else {
-                zipalign = findFromEnv(buildEnv, workspace, logger);
+                FindZipalignCallable.Result result = workspace.act(new FindZipalignCallable(
+                    expand(overrideZipalignPath), expand(overrideAndroidHome),
+                    expand(buildEnv.get(ENV_ZIPALIGN_PATH)), expand(buildEnv.get(ENV_ANDROID_HOME)), expand(buildEnv.get(ENV_PATH)),
+                    cachedPath));
+                logger.print(result.log);
+                if (result.zipalign != null) {
+                    zipalign = new FilePath(workspace.getChannel(), result.zipalign);
+                }
+                cached = result.cached;
+                failure = result.failure;
+            }
+
+            if (cachedPath != null && !cached) {
+                ZipalignLocationCache.remove(computer, cacheInputs);
+            }
+
+            if (failure != null) {
+                throw new AbortException(failure);
             }
 
             if (zipalign == null) {
                 throw new AbortException("failed to find zipalign path in parameters or environment");
             }
+
+            if (computer != null && !cached) {
+                ZipalignLocationCache.put(computer, cacheInputs, zipalign.getRemote());
+            }
+            discoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
         }
 
         return new ArgumentListBuilder()
             .add(zipalign.getRemote())
             .add("-P")
-            .add("16")
+            .add(String.valueOf(pageAlignmentKb))
             .add("-f")
-            .add("4")
+            .add(String.valueOf(ZIP_ALIGNMENT))
             .add(unsignedApk)
             .add(outputApk);
     }
@@ -0,0 +1,119 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import hudson.Util;
+import hudson.model.TaskListener;
+
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_ALIAS;
+
+
+/**
+ * Compares the bytes read and written to sign one APK with the external zipalign process, which writes an
+ * intermediate aligned copy that apksig then reads, to aligning in the signing pass with internal zipalign.
+ * Each measurement iteration signs one APK, so the {@code bytesRead} and {@code bytesWritten} secondary results
+ * are per APK.  A file copy stands in for zipalign, which likewise reads the whole input and writes the whole
+ * aligned output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AlignAndSignIoBenchmark {
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Io {
+
+        public long bytesRead;
+        public long bytesWritten;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytesRead = 0;
+            bytesWritten = 0;
+        }
+
+        void add(ApkIoCounters counters) {
+            bytesRead += counters.getBytesRead();
+            bytesWritten += counters.getBytesWritten();
+        }
+    }
+
+    @Param({"SignApksBuilderTest.apk", "SignApksBuilderTest-chocolate_flavor.apk"})
+    public String apk;
+
+    private File workDir;
+    private File unsignedApk;
+    private File alignedApk;
+    private File signedApk;
+    private String keySession;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        unsignedApk = new File(workDir, apk);
+        alignedApk = new File(workDir, "aligned-" + apk);
+        signedApk = new File(workDir, "signed-" + apk);
+        try (InputStream in = getClass().getResourceAsStream("/workspace/" + apk)) {
+            Files.copy(in, unsignedApk.toPath());
+        }
+        KeyStore.PrivateKeyEntry signingEntry = TestKeyStore.loadSigningEntry();
+        keySession = SigningKeySessions.open(signingEntry.getPrivateKey(), signingEntry.getCertificateChain(), KEY_ALIAS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        SigningKeySessions.close(keySession);
+        Util.deleteRecursive(workDir);
+    }
+
+    @Benchmark
+    public void zipalignThenSign(Io io) throws Exception {
+        long size;
+        try (FileChannel in = FileChannel.open(unsignedApk.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(alignedApk.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+        io.bytesRead += size;
+        io.bytesWritten += size;
+        io.add(sign(alignedApk, false));
+    }
+
+    @Benchmark
+    public void alignWhileSigning(Io io) throws Exception {
+        io.add(sign(unsignedApk, true));
+    }
+
+    private ApkIoCounters sign(File inputApk, boolean alignInProcess) throws Exception {
+        SignApksBuilder.SignApkCallable signApk = new SignApksBuilder.SignApkCallable(keySession, signedApk.getPath(), new SigningOptions(alignInProcess), TaskListener.NULL);
+        return signApk.invoke(inputApk, null);
+    }
+}
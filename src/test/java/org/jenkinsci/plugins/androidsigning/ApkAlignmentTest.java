@@ -0,0 +1,107 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+class ApkAlignmentTest {
+
+    private static final int PAGE = ZipalignTool.DEFAULT_PAGE_ALIGNMENT_KB * 1024;
+
+    @TempDir
+    private File dir;
+
+    private File storedZip(String entryName) throws IOException {
+        byte[] data = "not compressed".getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ZipEntry entry = new ZipEntry(entryName);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(data.length);
+        entry.setCompressedSize(data.length);
+        entry.setCrc(crc.getValue());
+        File zip = new File(dir, "stored.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(entry);
+            out.write(data);
+            out.closeEntry();
+        }
+        return zip;
+    }
+
+    @Test
+    void acceptsAlignedApk() throws Exception {
+        File apk = new File(getClass().getResource("/workspace/SignApksBuilderTest-unsigned.apk").toURI());
+
+        assertThat(ApkAlignment.misalignmentOf(apk, ZipalignTool.ZIP_ALIGNMENT, PAGE), nullValue());
+    }
+
+    @Test
+    void rejectsUncompressedEntryNotAlignedToFourBytes() throws Exception {
+        // the data of the first entry starts after the 30 byte local header and the 5 byte name
+        File zip = storedZip("a.txt");
+
+        assertThat(ApkAlignment.misalignmentOf(zip, ZipalignTool.ZIP_ALIGNMENT, PAGE),
+            containsString("data of entry a.txt at offset 35 is not aligned to 4 bytes"));
+    }
+
+    @Test
+    void rejectsUncompressedNativeLibraryNotAlignedToPage() throws Exception {
+        // 30 + 14 bytes puts the data at a multiple of 4, but not of the page size
+        File zip = storedZip("lib/x86/lib.so");
+
+        assertThat(ApkAlignment.misalignmentOf(zip, ZipalignTool.ZIP_ALIGNMENT, PAGE),
+            containsString("data of entry lib/x86/lib.so at offset 44 is not aligned to " + PAGE + " bytes"));
+        assertThat(ApkAlignment.misalignmentOf(zip, ZipalignTool.ZIP_ALIGNMENT, 0), nullValue());
+    }
+
+    @Test
+    void ignoresCompressedEntries() throws Exception {
+        File zip = new File(dir, "deflated.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("a.txt"));
+            out.write("compressed".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        assertThat(ApkAlignment.misalignmentOf(zip, ZipalignTool.ZIP_ALIGNMENT, PAGE), nullValue());
+    }
+
+    @Test
+    void reportsFilesThatAreNotZips() throws Exception {
+        File notZip = new File(dir, "not.apk");
+        Files.write(notZip.toPath(), "not a zip file, but long enough to hold an end record".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(ApkAlignment.misalignmentOf(notZip, ZipalignTool.ZIP_ALIGNMENT, PAGE),
+            containsString("no ZIP end of central directory record"));
+    }
+
+    @Test
+    void reportsCentralDirectoryEntryThatOverrunsCentralDirectory() throws Exception {
+        File zip = storedZip("a.txt");
+        byte[] bytes = Files.readAllBytes(zip.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int centralDirectory = buffer.getInt(bytes.length - 22 + 16);
+        // the entry's name length
+        buffer.putShort(centralDirectory + 28, (short) 0xffff);
+        Files.write(zip.toPath(), bytes);
+
+        assertThat(ApkAlignment.misalignmentOf(zip, ZipalignTool.ZIP_ALIGNMENT, PAGE),
+            containsString("malformed ZIP central directory"));
+    }
+}
@@ -0,0 +1,96 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import hudson.Util;
+import hudson.model.TaskListener;
+
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_ALIAS;
+
+
+/**
+ * Compares the time to sign one APK and the heap the signing thread allocates doing it in each {@link ApkIoMode}.
+ * The content digests run on the signing thread only, so the {@code allocatedBytes} secondary result covers all of
+ * apksig's allocations, per APK.  The APKs are the test APK with an uncompressed filler asset of {@link #apkSizeMb}
+ * MB, as in {@link ContentDigestBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class ApkIoModeBenchmark {
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Allocation {
+
+        public long allocatedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            allocatedBytes = 0;
+        }
+    }
+
+    @Param({"RANDOM_ACCESS_FILE", "FILE_CHANNEL", "MEMORY_MAPPED"})
+    public ApkIoMode ioMode;
+
+    @Param({"16", "128", "512"})
+    public int apkSizeMb;
+
+    private File workDir;
+    private File unsignedApk;
+    private File signedApk;
+    private String keySession;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        unsignedApk = new File(workDir, "unsigned.apk");
+        signedApk = new File(workDir, "signed.apk");
+        File sourceApk = new File(workDir, "source.apk");
+        try (InputStream in = getClass().getResourceAsStream("/workspace/SignApksBuilderTest-unsigned.apk")) {
+            Files.copy(in, sourceApk.toPath());
+        }
+        ContentDigestBenchmark.writeApkWithFiller(sourceApk, unsignedApk, apkSizeMb * 1024L * 1024L);
+        KeyStore.PrivateKeyEntry signingEntry = TestKeyStore.loadSigningEntry();
+        keySession = SigningKeySessions.open(signingEntry.getPrivateKey(), signingEntry.getCertificateChain(), KEY_ALIAS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        SigningKeySessions.close(keySession);
+        Util.deleteRecursive(workDir);
+    }
+
+    @Benchmark
+    public void sign(Allocation allocation) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        SigningOptions options = new SigningOptions(false).ioMode(ioMode).digestThreads(1);
+        new SignApksBuilder.SignApkCallable(keySession, signedApk.getPath(), options, TaskListener.NULL).invoke(unsignedApk, null);
+        allocation.allocatedBytes += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    }
+}
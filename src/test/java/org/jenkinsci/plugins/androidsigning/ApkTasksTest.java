@@ -0,0 +1,50 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import hudson.model.TaskListener;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ApkTasksTest {
+
+    @Test
+    void ordersLargestFirstAndKeepsOrderOfEqualSizes() {
+        assertThat(ApkTasks.largestFirst(Arrays.asList(20L, 800L, 20L, 30L, 800L), 5), equalTo(Arrays.asList(1, 4, 3, 0, 2)));
+        assertThat(ApkTasks.largestFirst(null, 3), equalTo(Arrays.asList(0, 1, 2)));
+    }
+
+    @Test
+    void startsLargestApksFirstAndReturnsResultsInTaskOrder() throws Exception {
+        List<Long> sizes = Arrays.asList(20L, 800L, 30L, 700L);
+        List<String> started = new CopyOnWriteArrayList<>();
+        CountDownLatch twoStarted = new CountDownLatch(2);
+        List<ApkTasks.Task<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < sizes.size(); i++) {
+            String name = "apk-" + sizes.get(i);
+            tasks.add(listener -> {
+                started.add(name);
+                twoStarted.countDown();
+                assertTrue(twoStarted.await(10, TimeUnit.SECONDS));
+                listener.getLogger().println("signed " + name);
+                return name;
+            });
+        }
+
+        List<String> results = ApkTasks.run(tasks, sizes, 2, TaskListener.NULL);
+
+        assertThat(started.subList(0, 2), containsInAnyOrder("apk-800", "apk-700"));
+        assertThat(results, equalTo(Arrays.asList("apk-20", "apk-800", "apk-30", "apk-700")));
+    }
+}
@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import hudson.AbortException;
+import hudson.model.TaskListener;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ArchiveQueueTest {
+
+    private static Map<String,String> artifact(String name) {
+        return Collections.singletonMap("archive/" + name, name);
+    }
+
+    @Test
+    void archivesEverySubmittedApkOneUploadAtATime() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> archived = new CopyOnWriteArrayList<>();
+        ArchiveQueue queue = new ArchiveQueue(artifacts -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            archived.addAll(artifacts.values());
+            running.decrementAndGet();
+        }, TaskListener.NULL);
+
+        for (int i = 0; i < 6; i++) {
+            queue.submit("app-" + i + ".apk", artifact("app-" + i + ".apk"));
+        }
+        queue.awaitAll();
+
+        assertThat(archived, contains("app-0.apk", "app-1.apk", "app-2.apk", "app-3.apk", "app-4.apk", "app-5.apk"));
+        assertThat(maxRunning.get(), equalTo(1));
+    }
+
+    @Test
+    void archivesApksSubmittedDuringAnUploadInOneCall() throws Exception {
+        CountDownLatch uploading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Map<String,String>> calls = new CopyOnWriteArrayList<>();
+        ArchiveQueue queue = new ArchiveQueue(artifacts -> {
+            calls.add(artifacts);
+            uploading.countDown();
+            release.await();
+        }, TaskListener.NULL);
+
+        queue.submit("app-0.apk", artifact("app-0.apk"));
+        assertTrue(uploading.await(10, TimeUnit.SECONDS));
+        queue.submit("app-1.apk", artifact("app-1.apk"));
+        queue.submit("app-2.apk", artifact("app-2.apk"));
+        release.countDown();
+        queue.awaitAll();
+
+        assertThat(calls.size(), equalTo(2));
+        assertThat(calls.get(0).values(), contains("app-0.apk"));
+        assertThat(calls.get(1).values(), contains("app-1.apk", "app-2.apk"));
+    }
+
+    @Test
+    void failsAndSkipsPendingUploadsWhenAnUploadFails() throws Exception {
+        CountDownLatch failedFirst = new CountDownLatch(1);
+        List<String> archived = new CopyOnWriteArrayList<>();
+        ArchiveQueue queue = new ArchiveQueue(artifacts -> {
+            if (artifacts.containsValue("broken.apk")) {
+                failedFirst.countDown();
+                throw new IOException("upload failed");
+            }
+            archived.addAll(artifacts.values());
+        }, TaskListener.NULL);
+
+        queue.submit("broken.apk", artifact("broken.apk"));
+        assertTrue(failedFirst.await(10, TimeUnit.SECONDS));
+        queue.submit("app-1.apk", artifact("app-1.apk"));
+        queue.submit("app-2.apk", artifact("app-2.apk"));
+
+        AbortException e = assertThrows(AbortException.class, queue::awaitAll);
+
+        assertThat(e.getMessage(), containsString("failed to archive broken.apk"));
+        assertThat(e.getMessage(), containsString("skipped archiving 2 more APKs"));
+        assertThat(archived.size(), equalTo(0));
+    }
+}
@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the JMH benchmarks in the test sources.  The benchmark Maven profile enables this instead of the
+ * tests: {@code mvn -P benchmark test}.  The GC profiler adds each benchmark's allocation rate, in MB/s and in
+ * bytes per operation, and its GC counts and times to the results.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BenchmarkRunner {
+
+    @Test
+    void runJmhBenchmarks() throws Exception {
+        String include = System.getProperty("benchmark.include", getClass().getPackage().getName() + ".*Benchmark");
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .include(include)
+            .shouldFailOnError(true)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("target/jmh-report.json");
+        // e.g., -Dbenchmark.params=apkSizeMb=1,4096;entryCount=1,50000 replaces the values of those parameters
+        String params = System.getProperty("benchmark.params", "");
+        for (String param : params.split(";")) {
+            String[] nameAndValues = param.split("=", 2);
+            if (nameAndValues.length == 2) {
+                options.param(nameAndValues[0].trim(), nameAndValues[1].trim().split("\\s*,\\s*"));
+            }
+        }
+        new Runner(options.build()).run();
+    }
+}
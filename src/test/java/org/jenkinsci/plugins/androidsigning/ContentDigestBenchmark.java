@@ -0,0 +1,147 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.android.apksig.ApkSigner;
+import com.android.apksig.DefaultApkSignerEngine;
+import com.android.apksig.util.DataSinks;
+import com.android.apksig.util.DataSources;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import hudson.Util;
+
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_ALIAS;
+
+
+/**
+ * Measures the time to compute the APK Signature Scheme v2 and v3 content digests of APKs of increasing size with
+ * {@link ContentDigestExecutor} and different thread counts, to find the APK size at which more threads start to
+ * pay off, i.e., a sensible default for {@link SignApksBuilder#setParallelDigestThresholdMb(int)}.  v1 signing is
+ * disabled because its per-entry digests are always single-threaded and would hide the difference.  The APKs are
+ * the test APK with an uncompressed filler asset of {@link #apkSizeMb} MB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContentDigestBenchmark {
+
+    @Param({"1", "4", "16", "64", "256", "1024"})
+    public int apkSizeMb;
+
+    @Param({"1", "2", "4", "8"})
+    public int digestThreads;
+
+    private File workDir;
+    private File unsignedApk;
+    private File signedApk;
+    private DefaultApkSignerEngine.SignerConfig signerConfig;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        unsignedApk = new File(workDir, "unsigned.apk");
+        signedApk = new File(workDir, "signed.apk");
+        File sourceApk = new File(workDir, "source.apk");
+        try (InputStream in = getClass().getResourceAsStream("/workspace/SignApksBuilderTest-unsigned.apk")) {
+            Files.copy(in, sourceApk.toPath());
+        }
+        writeApkWithFiller(sourceApk, unsignedApk, apkSizeMb * 1024L * 1024L);
+
+        KeyStore.PrivateKeyEntry signingEntry = TestKeyStore.loadSigningEntry();
+        List<X509Certificate> certs = new ArrayList<>();
+        for (Certificate cert : signingEntry.getCertificateChain()) {
+            certs.add((X509Certificate) cert);
+        }
+        signerConfig = new DefaultApkSignerEngine.SignerConfig.Builder(KEY_ALIAS, signingEntry.getPrivateKey(), certs).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Util.deleteRecursive(workDir);
+    }
+
+    @Benchmark
+    public void signV2AndV3() throws Exception {
+        DefaultApkSignerEngine signerEngine = new DefaultApkSignerEngine.Builder(Collections.singletonList(signerConfig), 24)
+            .setV1SigningEnabled(false)
+            .setV2SigningEnabled(true)
+            .setV3SigningEnabled(true)
+            .build();
+        try (RandomAccessFile in = new RandomAccessFile(unsignedApk, "r");
+             RandomAccessFile out = new RandomAccessFile(signedApk, "rw")) {
+            out.setLength(0);
+            signerEngine.setExecutor(ContentDigestExecutor.forApk(in.length(), digestThreads, 0));
+            new ApkSigner.Builder(signerEngine)
+                .setInputApk(DataSources.asDataSource(in))
+                .setOutputApk(DataSinks.asDataSink(out), DataSources.asDataSource(out))
+                .build()
+                .sign();
+        }
+        finally {
+            signerEngine.close();
+        }
+    }
+
+    static void writeApkWithFiller(File sourceApk, File apk, long fillerSize) throws Exception {
+        byte[] filler = new byte[1024 * 1024];
+        new Random(fillerSize).nextBytes(filler);
+        CRC32 crc = new CRC32();
+        for (long written = 0; written < fillerSize; written += filler.length) {
+            crc.update(filler, 0, (int) Math.min(filler.length, fillerSize - written));
+        }
+        try (ZipFile source = new ZipFile(sourceApk);
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(apk.toPath()))) {
+            Enumeration<? extends ZipEntry> entries = source.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                try (InputStream in = source.getInputStream(entry)) {
+                    in.transferTo(out);
+                }
+                out.closeEntry();
+            }
+            ZipEntry fillerEntry = new ZipEntry("assets/filler.bin");
+            fillerEntry.setMethod(ZipEntry.STORED);
+            fillerEntry.setSize(fillerSize);
+            fillerEntry.setCompressedSize(fillerSize);
+            fillerEntry.setCrc(crc.getValue());
+            out.putNextEntry(fillerEntry);
+            for (long written = 0; written < fillerSize; written += filler.length) {
+                out.write(filler, 0, (int) Math.min(filler.length, fillerSize - written));
+            }
+            out.closeEntry();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.android.apksig.util.RunnablesExecutor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ContentDigestExecutorTest {
+
+    @Test
+    void usesOneThreadBelowThreshold() {
+        assertThat(ContentDigestExecutor.forApk(1024, 4, 1025), sameInstance(RunnablesExecutor.SINGLE_THREADED));
+        assertThat(ContentDigestExecutor.forApk(1024, 1, 0), sameInstance(RunnablesExecutor.SINGLE_THREADED));
+        assertThat(ContentDigestExecutor.forApk(1024, 4, 1024), instanceOf(ContentDigestExecutor.class));
+    }
+
+    @Test
+    void usesAvailableProcessorsByDefault() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        RunnablesExecutor executor = ContentDigestExecutor.forApk(1024, 0, 0);
+        if (processors == 1) {
+            assertThat(executor, sameInstance(RunnablesExecutor.SINGLE_THREADED));
+        }
+        else {
+            assertThat(((ContentDigestExecutor) executor).getThreads(), equalTo(processors));
+        }
+    }
+
+    @Test
+    void sharesAvailableProcessorsAmongConcurrentApksByDefault() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        RunnablesExecutor executor = ContentDigestExecutor.forApk(1024, 0, 2, 0);
+        if (processors / 2 <= 1) {
+            assertThat(executor, sameInstance(RunnablesExecutor.SINGLE_THREADED));
+        }
+        else {
+            assertThat(((ContentDigestExecutor) executor).getThreads(), equalTo(processors / 2));
+        }
+        assertThat(ContentDigestExecutor.forApk(1024, 0, processors + 1, 0), sameInstance(RunnablesExecutor.SINGLE_THREADED));
+        assertThat(((ContentDigestExecutor) ContentDigestExecutor.forApk(1024, 3, 4, 0)).getThreads(), equalTo(3));
+    }
+
+    @Test
+    void runsOneJobPerThreadConcurrently() throws Exception {
+        RunnablesExecutor executor = ContentDigestExecutor.forApk(1024, 3, 0);
+        CountDownLatch allStarted = new CountDownLatch(3);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        AtomicInteger created = new AtomicInteger();
+
+        executor.execute(() -> {
+            created.incrementAndGet();
+            return () -> {
+                threads.add(Thread.currentThread());
+                allStarted.countDown();
+                try {
+                    assertTrue(allStarted.await(10, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+        });
+
+        assertThat(created.get(), equalTo(3));
+        assertThat(threads.size(), equalTo(3));
+        assertTrue(threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    void rethrowsJobFailures() {
+        RunnablesExecutor executor = ContentDigestExecutor.forApk(1024, 2, 0);
+        AtomicInteger created = new AtomicInteger();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> executor.execute(() -> {
+            if (created.incrementAndGet() == 1) {
+                return () -> {
+                    throw new IllegalStateException("digest failed");
+                };
+            }
+            return () -> {};
+        }));
+
+        assertThat(e.getMessage(), equalTo("digest failed"));
+    }
+}
@@ -14,9 +14,13 @@ import hudson.Proc;
 class FakeZipalign implements FakeLauncher {
 
     Launcher.ProcStarter lastProc;
+    int echoLaunches = 0;
 
     @Override
     public Proc onLaunch(Launcher.ProcStarter p) throws IOException {
+        if (p.cmds().contains("echo")) {
+            echoLaunches++;
+        }
         if (!p.cmds().get(0).contains("zipalign")) {
             if (p.cmds().get(0).contains("find") ||
                 p.cmds().get(0).contains("test") ||
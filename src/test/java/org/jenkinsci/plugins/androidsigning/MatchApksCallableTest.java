@@ -0,0 +1,93 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+
+class MatchApksCallableTest {
+
+    @TempDir
+    private File workspace;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        for (String path : Arrays.asList(
+            "app/build/outputs/apk/app-release-unsigned.apk",
+            "app/build/outputs/apk/app-debug.apk",
+            "lib/build/outputs/apk/lib-release-unsigned.apk",
+            "top-unsigned.apk",
+            "SignApksBuilder-out/zipalign/aligned-app-release-unsigned.apk",
+            ".git/objects/not-an-app-unsigned.apk")) {
+            File file = new File(workspace, path);
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), path.getBytes());
+        }
+    }
+
+    private List<String> relativePaths(MatchApksCallable.Result result) {
+        return result.apks.stream()
+            .map(apk -> workspace.toPath().relativize(new File(apk.path).toPath()).toString().replace(File.separatorChar, '/'))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void matchesAllGlobsInOneWalkWithoutDuplicates() throws Exception {
+        String[] globs = { "**/*-unsigned.apk", "app/**/*.apk", "top-unsigned.apk" };
+
+        MatchApksCallable.Result result = new MatchApksCallable(globs, "SignApksBuilder-out/**").invoke(workspace, null);
+
+        assertThat(relativePaths(result), equalTo(Arrays.asList(
+            "app/build/outputs/apk/app-debug.apk",
+            "app/build/outputs/apk/app-release-unsigned.apk",
+            "lib/build/outputs/apk/lib-release-unsigned.apk",
+            "top-unsigned.apk")));
+        assertThat(result.matchCounts, equalTo(Arrays.asList(3, 2, 1)));
+    }
+
+    @Test
+    void returnsAbsolutePathsWithSizeAndModificationTime() throws Exception {
+        File apk = new File(workspace, "top-unsigned.apk");
+
+        MatchApksCallable.Result result = new MatchApksCallable(new String[] { "top-unsigned.apk" }, null).invoke(workspace, null);
+
+        assertThat(result.apks.size(), equalTo(1));
+        assertThat(result.apks.get(0).path, equalTo(apk.getAbsolutePath()));
+        assertThat(result.apks.get(0).size, equalTo(apk.length()));
+        assertThat(result.apks.get(0).lastModified, equalTo(apk.lastModified()));
+    }
+
+    @Test
+    void countsGlobsThatMatchNothing() throws Exception {
+        String[] globs = { "**/*-unsigned.apk", "missing/*.apk", "SignApksBuilder-out/**/*.apk" };
+
+        MatchApksCallable.Result result = new MatchApksCallable(globs, "SignApksBuilder-out/**").invoke(workspace, null);
+
+        assertThat(result.matchCounts, equalTo(Arrays.asList(3, 0, 0)));
+    }
+
+    @Test
+    void skipsDirectoriesItCannotRead() throws Exception {
+        File unreadable = new File(workspace, "private");
+        Files.createDirectories(new File(unreadable, "nested").toPath());
+        assumeTrue(unreadable.setReadable(false, false) && !unreadable.canRead(), "cannot make a directory unreadable");
+        try {
+            MatchApksCallable.Result result = new MatchApksCallable(new String[] { "**/*-unsigned.apk" }, "SignApksBuilder-out/**").invoke(workspace, null);
+
+            assertThat(result.matchCounts, equalTo(Arrays.asList(3)));
+        }
+        finally {
+            unreadable.setReadable(true, false);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import hudson.Util;
+import hudson.model.TaskListener;
+
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_ALIAS;
+
+
+/**
+ * Measures the throughput and latency percentiles of {@link SignApksBuilder.SignApkCallable#invoke} with the
+ * default signing options, over {@link SyntheticApk synthetic APKs} of {@link #apkSizeMb} MB in {@link #entryCount}
+ * entries.  Half the assets are compressed, so both v1 signing, which digests the uncompressed data of every entry,
+ * and the v2 and v3 content digests over the whole file show up in the results.  Scale runs can override the
+ * parameters with {@code -Dbenchmark.params=apkSizeMb=4096;entryCount=1,50000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SignApkBenchmark {
+
+    @Param({"1", "16", "128"})
+    public int apkSizeMb;
+
+    @Param({"10", "1000", "50000"})
+    public int entryCount;
+
+    private File workDir;
+    private File unsignedApk;
+    private File signedApk;
+    private String keySession;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        unsignedApk = new SyntheticApk().payloadBytes(apkSizeMb * 1024L * 1024L).entryCount(entryCount)
+            .writeTo(new File(workDir, "unsigned.apk"));
+        signedApk = new File(workDir, "signed.apk");
+        KeyStore.PrivateKeyEntry signingEntry = TestKeyStore.loadSigningEntry();
+        keySession = SigningKeySessions.open(signingEntry.getPrivateKey(), signingEntry.getCertificateChain(), KEY_ALIAS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        SigningKeySessions.close(keySession);
+        Util.deleteRecursive(workDir);
+    }
+
+    @Benchmark
+    public ApkIoCounters sign() throws Exception {
+        return new SignApksBuilder.SignApkCallable(keySession, signedApk.getPath(), new SigningOptions(false), TaskListener.NULL)
+            .invoke(unsignedApk, null);
+    }
+}
@@ -3,6 +3,7 @@ package org.jenkinsci.plugins.androidsigning;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
+import com.codahale.metrics.MetricRegistry;
 import org.htmlunit.html.HtmlPage;
 import org.htmlunit.html.HtmlForm;
 import org.htmlunit.html.HtmlInput;
@@ -43,6 +44,7 @@ import hudson.Proc;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Build;
+import hudson.model.Computer;
 import hudson.model.BuildListener;
 import hudson.model.Descriptor;
 import hudson.model.FreeStyleBuild;
@@ -55,7 +57,9 @@ import hudson.slaves.EnvironmentVariablesNodeProperty;
 import hudson.slaves.NodeProperty;
 import hudson.tasks.BuildWrapper;
 import hudson.tasks.BuildWrapperDescriptor;
+import jenkins.metrics.api.Metrics;
 import jenkins.util.VirtualFile;
+import net.sf.json.JSONObject;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.endsWith;
@@ -237,6 +241,22 @@ class SignApksBuilderTest {
         assertThat(signedApkArtifact.getFileName(), equalTo("SignApksBuilderTest-signed.apk"));
     }
 
+    @Test
+    void archivesTheV4SignatureWithTheSignedApk() throws Exception {
+        List<Apk> entries = new ArrayList<>();
+        entries.add(new Apk(KEY_STORE_ID, KEY_ALIAS, "*-unsigned.apk")
+            .archiveSignedApks(true).archiveUnsignedApk(false));
+        SignApksBuilder builder = new SignApksBuilder(entries);
+        builder.setV4SigningEnabled(true);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+        List<String> artifactNames = build.getArtifacts().stream().map(Run.Artifact::getFileName).collect(Collectors.toList());
+
+        assertThat(artifactNames.size(), equalTo(2));
+        assertThat(artifactNames, hasItems("SignApksBuilderTest-signed.apk", "SignApksBuilderTest-signed.apk.idsig"));
+    }
+
     @Test
     void archivesTheUnsignedApk() throws Exception {
         List<Apk> entries = new ArrayList<>();
@@ -350,6 +370,71 @@ class SignApksBuilderTest {
         });
     }
 
+    @Test
+    void signsApksInParallel() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        builder.setApksToSign("SignApksBuilderTest-*.apk, SignApksBuilderTest.apk");
+        builder.setSignedApkMapping(new SignedApkMappingStrategy.UnsignedApkBuilderDirMapping());
+        builder.setArchiveSignedApks(true);
+        builder.setArchiveUnsignedApks(false);
+        builder.setParallelSigning(true);
+        builder.setParallelSigningThreads(3);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+        List<Run<FreeStyleProject,FreeStyleBuild>.Artifact> artifacts = build.getArtifacts();
+
+        testJenkins.assertLogContains("signing 3 APKs with up to 3 concurrent threads", build);
+        assertThat(artifacts.size(), equalTo(3));
+        for (Run.Artifact artifact : artifacts) {
+            assertThat(buildArtifact(build, artifact), isSigned());
+        }
+
+        String log = build.getLog();
+        int chocolateSigning = log.indexOf("signing APK SignApksBuilder-out/zipalign/aligned-SignApksBuilderTest-chocolate_flavor-");
+        int chocolateSigned = log.indexOf("signed APK SignApksBuilder-out/SignApksBuilderTest-chocolate_flavor.apk/");
+        int unsignedSigning = log.indexOf("signing APK SignApksBuilder-out/zipalign/aligned-SignApksBuilderTest-unsigned-");
+        assertThat(chocolateSigning, greaterThan(-1));
+        assertThat(chocolateSigned, greaterThan(chocolateSigning));
+        assertThat(unsignedSigning, greaterThan(chocolateSigned));
+        assertThat(SigningKeySessions.openSessionCount(), equalTo(0));
+    }
+
+    @Test
+    void archivesEachApkAsSoonAsItIsSigned() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        builder.setApksToSign("SignApksBuilderTest-*.apk, SignApksBuilderTest.apk");
+        builder.setSignedApkMapping(new SignedApkMappingStrategy.UnsignedApkBuilderDirMapping());
+        builder.setArchiveSignedApks(true);
+        builder.setArchiveUnsignedApks(true);
+        builder.setPipelinedArchiving(true);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+        List<Run<FreeStyleProject,FreeStyleBuild>.Artifact> artifacts = build.getArtifacts();
+
+        testJenkins.assertLogContains("archiving each APK as soon as it is signed", build);
+        assertThat(artifacts.size(), equalTo(6));
+        for (Run.Artifact artifact : artifacts) {
+            // SignApksBuilder-out/<key store>/<alias>/<unsigned APK>/<unsigned or signed APK>
+            String unsignedApkName = artifact.relativePath.split("/")[3];
+            if (!artifact.getFileName().equals(unsignedApkName)) {
+                assertThat(buildArtifact(build, artifact), isSigned());
+            }
+        }
+
+        String log = build.getLog();
+        int firstArchived = log.indexOf("archiving signed APK ");
+        int lastSigning = log.lastIndexOf("signing APK ");
+        assertThat(firstArchived, greaterThan(-1));
+        assertThat(lastSigning, greaterThan(firstArchived));
+        assertThat(SigningKeySessions.openSessionCount(), equalTo(0));
+    }
+
     @Test
     void multipleBuildersDoNotOverwriteArtifacts() throws Exception {
         SignApksBuilder builder1 = new SignApksBuilder();
@@ -517,6 +602,111 @@ class SignApksBuilderTest {
         assertThat(zipalignLauncher.lastProc.cmds().get(0), startsWith(decoratedZipalign.getRemote()));
     }
 
+    @Test
+    void searchesForZipalignWithLauncherWhenEnabled() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setSearchZipalignWithLauncher(true);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        testJenkins.assertLogContains("[SignApksBuilder] is File", build);
+        assertThat(zipalignLauncher.lastProc.cmds().get(0), equalTo(androidHome.child("build-tools").child("1.0").child("zipalign").getRemote()));
+
+        builder.setSearchZipalignWithLauncher(false);
+        ZipalignLocationCache.flush(slave.toComputer());
+        build = testJenkins.buildAndAssertSuccess(job);
+
+        testJenkins.assertLogNotContains("[SignApksBuilder] is File", build);
+        testJenkins.assertLogContains("found zipalign in Android SDK's latest build tools", build);
+    }
+
+    @Test
+    void cachesZipalignLocationPerComputer() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setApksToSign("*-unsigned.apk");
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+        FilePath zipalign = androidHome.child("build-tools").child("1.0").child("zipalign");
+
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        testJenkins.assertLogContains("found zipalign in Android SDK's latest build tools", build);
+        Computer computer = slave.toComputer();
+        assertThat(ZipalignLocationCache.entries(computer).size(), equalTo(1));
+        assertThat(ZipalignLocationCache.entries(computer).iterator().next().getZipalignPath(), equalTo(zipalign.getRemote()));
+
+        build = testJenkins.buildAndAssertSuccess(job);
+
+        testJenkins.assertLogContains("using cached zipalign path " + zipalign.getRemote(), build);
+        testJenkins.assertLogNotContains("found zipalign in Android SDK's latest build tools", build);
+        assertThat(zipalignLauncher.lastProc.cmds().get(0), equalTo(zipalign.getRemote()));
+
+        JenkinsRule.WebClient browser = testJenkins.createWebClient();
+        HtmlPage cachePage = browser.getPage(computer, "zipalignCache");
+        assertThat(cachePage.asNormalizedText(), containsString(zipalign.getRemote()));
+        HtmlPage flushed = cachePage.getFormByName("flush").getButtonByName("Submit").click();
+        assertThat(flushed.asNormalizedText(), containsString("The cache is empty."));
+        assertThat(ZipalignLocationCache.entries(computer).isEmpty(), equalTo(true));
+
+        build = testJenkins.buildAndAssertSuccess(job);
+
+        testJenkins.assertLogContains("found zipalign in Android SDK's latest build tools", build);
+    }
+
+    @Test
+    void resolvesEffectiveEnvironmentOncePerBuildAndNode() throws Exception {
+        FreeStyleProject job = createSignApkJob();
+        for (String apksToSign : new String[] { "*-unsigned.apk", "*-chocolate_flavor.apk" }) {
+            SignApksBuilder builder = new SignApksBuilder();
+            builder.setKeyStoreId(KEY_STORE_ID);
+            builder.setApksToSign(apksToSign);
+            job.getBuildersList().add(builder);
+        }
+
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        assertThat(zipalignLauncher.echoLaunches, equalTo(1));
+        testJenkins.assertLogContains("using effective environment resolved earlier in this build", build);
+        assertThat(build.getArtifacts().size(), equalTo(2));
+
+        testJenkins.buildAndAssertSuccess(job);
+
+        assertThat(zipalignLauncher.echoLaunches, equalTo(2));
+    }
+
+    @Test
+    void doesNotResolveEffectiveEnvironmentUnlessSearchingForZipalign() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setInternalZipalign(true);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+
+        testJenkins.buildAndAssertSuccess(job);
+
+        assertThat(zipalignLauncher.echoLaunches, equalTo(0));
+
+        builder.setInternalZipalign(false);
+        builder.setZipalignPath(androidHome.child("build-tools").child("1.0").child("zipalign").getRemote());
+
+        testJenkins.buildAndAssertSuccess(job);
+
+        assertThat(zipalignLauncher.echoLaunches, equalTo(0));
+        assertThat(zipalignLauncher.lastProc.cmds().get(0), equalTo(builder.getZipalignPath()));
+
+        builder.setZipalignPath("${ANDROID_HOME}/build-tools/1.0/zipalign");
+
+        testJenkins.buildAndAssertSuccess(job);
+
+        assertThat(zipalignLauncher.echoLaunches, equalTo(1));
+    }
+
     @Test
     void abortsIfZipalignIsNotFound() throws Exception {
 
@@ -550,6 +740,209 @@ class SignApksBuilderTest {
         assertThat(zipalignLauncher.lastProc, nullValue());
     }
 
+    @Test
+    void alignsWithInternalZipalignWithoutLaunchingZipalign() throws Exception {
+        testJenkins.jenkins.getGlobalNodeProperties().remove(androidHomeEnvProp);
+
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        builder.setInternalZipalign(true);
+        builder.setArchiveSignedApks(true);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        assertThat(zipalignLauncher.lastProc, nullValue());
+        testJenkins.assertLogContains("aligning and signing APK SignApksBuilderTest-unsigned.apk", build);
+        testJenkins.assertLogNotContains("SignApksBuilder-out/zipalign/aligned-", build);
+        assertThat(buildArtifact(build, build.getArtifacts().get(0)), isSigned());
+    }
+
+    @Test
+    void signsAlreadyAlignedApksWithoutLaunchingZipalign() throws Exception {
+        testJenkins.jenkins.getGlobalNodeProperties().remove(androidHomeEnvProp);
+
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        builder.setSkipAlignedApks(true);
+        builder.setArchiveSignedApks(true);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        assertThat(zipalignLauncher.lastProc, nullValue());
+        testJenkins.assertLogContains("SignApksBuilderTest-unsigned.apk is already aligned, skipping zipalign", build);
+        testJenkins.assertLogNotContains("SignApksBuilder-out/zipalign/aligned-", build);
+        assertThat(buildArtifact(build, build.getArtifacts().get(0)), isSigned());
+    }
+
+    @Test
+    void alignsAndVerifiesNativeLibraryPageAlignment() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        builder.setNativeLibraryPageAlignmentKb(64);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        assertThat(zipalignLauncher.lastProc.cmds(), hasItems("-P", "64"));
+        testJenkins.assertLogContains("verified alignment of signed APK SignApksBuilderTest.apk: uncompressed native libraries aligned to 64 KB pages", build);
+    }
+
+    @Test
+    void abortsOnUnsupportedNativeLibraryPageAlignment() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        builder.setInternalZipalign(true);
+        builder.setNativeLibraryPageAlignmentKb(8);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+
+        Run run = testJenkins.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+        testJenkins.assertLogContains("native library page alignment must be 4, 16 or 64 KB, not 8 KB", run);
+    }
+
+    @Test
+    void reusesCachedSignedApkForUnchangedUnsignedApk() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        builder.setArchiveSignedApks(true);
+        builder.setCacheSignedApks(true);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        testJenkins.assertLogContains("signed APK cache: 0 of 1 APKs cached (0% hit rate)", build);
+        assertThat(zipalignLauncher.lastProc, notNullValue());
+
+        zipalignLauncher.lastProc = null;
+        build = testJenkins.buildAndAssertSuccess(job);
+
+        testJenkins.assertLogContains("signed APK cache: 1 of 1 APKs cached (100% hit rate)", build);
+        testJenkins.assertLogContains("using cached signed APK SignApksBuilderTest.apk for unsigned APK SignApksBuilderTest-unsigned.apk", build);
+        testJenkins.assertLogNotContains("[SignApksBuilder] signing APK", build);
+        assertThat(zipalignLauncher.lastProc, nullValue());
+        assertThat(buildArtifact(build, build.getArtifacts().get(0)), isSigned());
+
+        builder.setSkipZipalign(true);
+        build = testJenkins.buildAndAssertSuccess(job);
+
+        testJenkins.assertLogContains("signed APK cache: 0 of 1 APKs cached (0% hit rate)", build);
+        assertThat(SigningKeySessions.openSessionCount(), equalTo(0));
+    }
+
+    @Test
+    void reportsPhaseAndApkTimingsOnBuild() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        builder.setCacheSignedApks(true);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        SigningReportAction action = build.getAction(SigningReportAction.class);
+        assertThat(action, notNullValue());
+        assertThat(action.getSteps().size(), equalTo(1));
+        SigningReport report = action.getSteps().get(0);
+        assertThat(report.isFailed(), equalTo(false));
+        assertThat(report.getPhases().stream().map(SigningReport.Phase::getName).collect(Collectors.toList()), equalTo(Arrays.asList(
+            SigningReport.KEY_LOADING, SigningReport.MATCHING, SigningReport.CACHE_LOOKUP, SigningReport.ALIGNMENT,
+            SigningReport.ZIPALIGN_ENVIRONMENT, SigningReport.ZIPALIGN_DISCOVERY, SigningReport.SIGNING, SigningReport.ARCHIVING)));
+        assertThat(report.getApks().size(), equalTo(1));
+        SigningReport.ApkTiming apk = report.getApks().get(0);
+        assertThat(apk.getUnsignedApk(), equalTo("SignApksBuilderTest-unsigned.apk"));
+        assertThat(apk.isCached(), equalTo(false));
+        assertThat(apk.getUnsignedApkBytes(), greaterThan(0L));
+        assertThat(apk.getBytesRead(), greaterThan(0L));
+        assertThat(apk.getBytesWritten(), greaterThan(0L));
+
+        build = testJenkins.buildAndAssertSuccess(job);
+
+        report = build.getAction(SigningReportAction.class).getSteps().get(0);
+        assertThat(report.getApks().get(0).isCached(), equalTo(true));
+        assertThat(report.getApks().get(0).getSignMillis(), equalTo(0L));
+
+        JenkinsRule.WebClient browser = testJenkins.createWebClient();
+        assertThat(browser.getPage(build).asNormalizedText(), containsString("SignApksBuilderTest-unsigned.apk"));
+        HtmlPage reportPage = browser.getPage(build, "signingReport");
+        assertThat(reportPage.asNormalizedText(), containsString("cached"));
+        JSONObject json = browser.getJSON(build.getUrl() + "signingReport/api/json?depth=2").getJSONObject();
+        JSONObject step = json.getJSONArray("steps").getJSONObject(0);
+        assertThat(step.getString("keyStoreId"), equalTo(KEY_STORE_ID));
+        assertThat(step.getJSONArray("apks").getJSONObject(0).getBoolean("cached"), equalTo(true));
+    }
+
+    @Test
+    void chartsSigningTrendOfBuildsWithSigningReports() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        FreeStyleProject job = createSignApkJob();
+
+        assertThat(job.getAction(SigningTrendAction.class), nullValue());
+
+        job.getBuildersList().add(builder);
+        testJenkins.buildAndAssertSuccess(job);
+        FreeStyleBuild build = testJenkins.buildAndAssertSuccess(job);
+
+        SigningTrendAction trend = job.getAction(SigningTrendAction.class);
+        assertThat(trend, notNullValue());
+        List<SigningTrendAction.BuildSummary> builds = trend.getBuilds();
+        assertThat(builds.size(), equalTo(2));
+        assertThat(builds.get(1).getRun(), sameInstance(build));
+        assertThat(builds.get(1).getApkCount(), equalTo(1));
+        assertThat(builds.get(1).getSlowestApk(), equalTo("SignApksBuilderTest-unsigned.apk"));
+        assertThat(trend.getCharts().get(2).getPolylinePoints(), equalTo("0.0,0.0 500.0,0.0"));
+
+        JenkinsRule.WebClient browser = testJenkins.createWebClient();
+        assertThat(browser.getPage(job).asXml(), containsString("<polyline"));
+        HtmlPage trendPage = browser.getPage(job, "signingTrend");
+        assertThat(trendPage.asNormalizedText(), containsString("SignApksBuilderTest-unsigned.apk"));
+    }
+
+    @Test
+    void publishesSigningMetricsTaggedByCredentialAndNode() throws Exception {
+        SignApksBuilder builder = new SignApksBuilder();
+        builder.setApksToSign("*-unsigned.apk");
+        builder.setKeyStoreId(KEY_STORE_ID);
+        builder.setKeyAlias(KEY_ALIAS);
+        FreeStyleProject job = createSignApkJob();
+        job.getBuildersList().add(builder);
+
+        testJenkins.buildAndAssertSuccess(job);
+
+        MetricRegistry registry = Metrics.metricRegistry();
+        String tags = SigningMetrics.tagsFor(KEY_STORE_ID, slave.getLabelString());
+        assertThat(tags, startsWith("credential-" + SigningMetrics.hashOf(KEY_STORE_ID) + ".node-"));
+        assertThat(tags, not(containsString(KEY_STORE_ID)));
+        assertThat(registry.getCounters().get("android-signing.apks.signed." + tags).getCount(), equalTo(1L));
+        assertThat(registry.getCounters().get("android-signing.bytes.signed." + tags).getCount(), greaterThan(0L));
+        assertThat(registry.getTimers().get("android-signing.phase.signing." + tags).getCount(), equalTo(1L));
+        assertThat(registry.getTimers().get("android-signing.phase.zipalignDiscovery." + tags).getCount(), equalTo(1L));
+        assertThat(registry.getGauges().keySet(), hasItem("android-signing.keys.loaded"));
+
+        builder.setApksToSign("no-such-*.apk");
+        FreeStyleBuild failedBuild = testJenkins.assertBuildStatus(Result.FAILURE, job.scheduleBuild2(0));
+
+        assertThat(failedBuild.getAction(SigningReportAction.class).getSteps().get(0).getFailedPhase(), equalTo(SigningReport.MATCHING));
+        assertThat(registry.getCounters().get("android-signing.failures." + SigningReport.MATCHING + "." + tags).getCount(), equalTo(1L));
+    }
+
     @Test
     void identitySubmission() throws Exception {
         SignApksBuilder original = new SignApksBuilder();
@@ -558,6 +951,22 @@ class SignApksBuilderTest {
         original.setApksToSign("**/*-unsigned.apk");
         original.setSignedApkMapping(new SignedApkMappingStrategy.UnsignedApkSiblingMapping());
         original.setSkipZipalign(true);
+        original.setInternalZipalign(true);
+        original.setSearchZipalignWithLauncher(true);
+        original.setSkipAlignedApks(true);
+        original.setNativeLibraryPageAlignmentKb(64);
+        original.setParallelSigning(true);
+        original.setParallelSigningThreads(4);
+        original.setCacheSignedApks(true);
+        original.setPipelinedArchiving(true);
+        original.setDigestThreads(3);
+        original.setParallelDigestThresholdMb(8);
+        original.setApkIoMode(ApkIoMode.FILE_CHANNEL);
+        original.setV1Signing(V1Signing.DISABLED);
+        original.setV2SigningEnabled(false);
+        original.setV4SigningEnabled(true);
+        original.setMinSdkVersion(28);
+        original.setMaxSdkVersion(34);
         original.setArchiveSignedApks(!original.getArchiveSignedApks());
         original.setArchiveUnsignedApks(!original.getArchiveUnsignedApks());
         original.setAndroidHome(androidHome.getRemote());
@@ -576,10 +985,27 @@ class SignApksBuilderTest {
             "keyAlias",
             "apksToSign",
             "skipZipalign",
+            "internalZipalign",
+            "searchZipalignWithLauncher",
+            "skipAlignedApks",
+            "nativeLibraryPageAlignmentKb",
             "archiveUnsignedApks",
             "archiveSignedApks",
             "androidHome",
-            "zipalignPath"
+            "zipalignPath",
+            "parallelSigning",
+            "parallelSigningThreads",
+            "cacheSignedApks",
+            "pipelinedArchiving",
+            "digestThreads",
+            "parallelDigestThresholdMb",
+            "apkIoMode",
+            "v1Signing",
+            "v2SigningEnabled",
+            "v3SigningEnabled",
+            "v4SigningEnabled",
+            "minSdkVersion",
+            "maxSdkVersion"
         ));
         assertThat(submitted.getSignedApkMapping(), instanceOf(original.getSignedApkMapping().getClass()));
     }
@@ -604,10 +1030,27 @@ class SignApksBuilderTest {
             "keyAlias",
             "apksToSign",
             "skipZipalign",
+            "internalZipalign",
+            "searchZipalignWithLauncher",
+            "skipAlignedApks",
+            "nativeLibraryPageAlignmentKb",
             "archiveUnsignedApks",
             "archiveSignedApks",
             "androidHome",
-            "zipalignPath"
+            "zipalignPath",
+            "parallelSigning",
+            "parallelSigningThreads",
+            "cacheSignedApks",
+            "pipelinedArchiving",
+            "digestThreads",
+            "parallelDigestThresholdMb",
+            "apkIoMode",
+            "v1Signing",
+            "v2SigningEnabled",
+            "v3SigningEnabled",
+            "v4SigningEnabled",
+            "minSdkVersion",
+            "maxSdkVersion"
         ));
         assertThat(submitted.getSignedApkMapping(), instanceOf(original.getSignedApkMapping().getClass()));
     }
@@ -0,0 +1,333 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import hudson.AbortException;
+import hudson.FilePath;
+import hudson.util.StreamTaskListener;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_ALIAS;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class SignApksCallableTest {
+
+    @TempDir
+    private File tempDir;
+
+    private File workspace;
+    private SigningKeySessions.Key signingKey;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        URL workspaceUrl = getClass().getResource("/workspace");
+        FilePath testWorkspace = new FilePath(new File(workspaceUrl.toURI()));
+        FilePath workspace = new FilePath(tempDir).child("workspace");
+        testWorkspace.copyRecursiveTo(workspace);
+        this.workspace = new File(workspace.getRemote());
+        KeyStore.PrivateKeyEntry signingEntry = TestKeyStore.loadSigningEntry();
+        signingKey = new SigningKeySessions.Key(signingEntry.getPrivateKey(), signingEntry.getCertificateChain(), KEY_ALIAS);
+    }
+
+    private SignApksCallable.Input input(String unsignedApk, String signedApk) {
+        String unsignedPath = new File(workspace, unsignedApk).getPath();
+        return new SignApksCallable.Input(unsignedPath, unsignedPath, new File(workspace, signedApk).getPath());
+    }
+
+    private SignApksCallable callable(List<SignApksCallable.Input> inputs, int threads) {
+        return new SignApksCallable(inputs, signingKey, new SigningOptions(false), threads, StreamTaskListener.fromStdout());
+    }
+
+    @Test
+    void signsAllApksInOneCallAndReturnsResultsInInputOrder() throws Exception {
+        List<SignApksCallable.Input> inputs = Arrays.asList(
+            input("SignApksBuilderTest.apk", "out/SignApksBuilderTest-signed.apk"),
+            input("SignApksBuilderTest-unsigned.apk", "out/nested/SignApksBuilderTest.apk"),
+            input("SignApksBuilderTest-chocolate_flavor.apk", "SignApksBuilderTest-chocolate_flavor-signed.apk"));
+
+        List<SignApksCallable.SignedApk> results = callable(inputs, 2).invoke(workspace, null);
+
+        assertThat(results.size(), equalTo(3));
+        assertThat(results.get(0).unsignedApkName, equalTo("SignApksBuilderTest.apk"));
+        assertThat(results.get(0).unsignedApkPath, equalTo("SignApksBuilderTest.apk"));
+        assertThat(results.get(0).signedApkName, equalTo("SignApksBuilderTest-signed.apk"));
+        assertThat(results.get(0).signedApkPath, equalTo("out/SignApksBuilderTest-signed.apk"));
+        assertThat(results.get(1).unsignedApkPath, equalTo("SignApksBuilderTest-unsigned.apk"));
+        assertThat(results.get(1).signedApkPath, equalTo("out/nested/SignApksBuilderTest.apk"));
+        assertThat(results.get(2).signedApkPath, equalTo("SignApksBuilderTest-chocolate_flavor-signed.apk"));
+
+        for (SignApksCallable.SignedApk result : results) {
+            VerifyApkCallable.VerifyResult verified = new VerifyApkCallable(StreamTaskListener.fromStdout())
+                .invoke(new File(workspace, result.signedApkPath), null);
+            assertTrue(verified.isVerified);
+            assertThat(result.io.getBytesWritten(), greaterThanOrEqualTo(new File(workspace, result.signedApkPath).length()));
+            assertThat(result.io.getBytesRead(), greaterThan(new File(workspace, result.unsignedApkPath).length()));
+        }
+    }
+
+    @Test
+    void reportsEachApkAsSoonAsItIsSigned() throws Exception {
+        List<SignApksCallable.Input> inputs = Arrays.asList(
+            input("SignApksBuilderTest.apk", "SignApksBuilderTest-signed.apk"),
+            input("SignApksBuilderTest-chocolate_flavor.apk", "SignApksBuilderTest-chocolate_flavor-signed.apk"));
+        List<String> reported = new CopyOnWriteArrayList<>();
+
+        List<SignApksCallable.SignedApk> results = new SignApksCallable(inputs, signingKey, new SigningOptions(false), 2, null,
+            signedApk -> {
+                assertTrue(new File(workspace, signedApk.signedApkPath).isFile());
+                reported.add(signedApk.signedApkPath);
+            },
+            StreamTaskListener.fromStdout()).invoke(workspace, null);
+
+        assertThat(reported, containsInAnyOrder(results.get(0).signedApkPath, results.get(1).signedApkPath));
+    }
+
+    @Test
+    void signsWithMultithreadedContentDigests() throws Exception {
+        List<SignApksCallable.Input> inputs = Arrays.asList(
+            input("SignApksBuilderTest.apk", "SignApksBuilderTest-signed.apk"),
+            input("SignApksBuilderTest-chocolate_flavor.apk", "SignApksBuilderTest-chocolate_flavor-signed.apk"));
+        SigningOptions options = new SigningOptions(true).digestThreads(4).parallelDigestThresholdBytes(0);
+
+        List<SignApksCallable.SignedApk> results = new SignApksCallable(inputs, signingKey, options, 1, StreamTaskListener.fromStdout())
+            .invoke(workspace, null);
+
+        for (SignApksCallable.SignedApk result : results) {
+            VerifyApkCallable.VerifyResult verified = new VerifyApkCallable(StreamTaskListener.fromStdout())
+                .invoke(new File(workspace, result.signedApkPath), null);
+            assertTrue(verified.isVerified);
+        }
+    }
+
+    @Test
+    @DisabledOnOs(value = OS.WINDOWS, disabledReason = "Windows may refuse to replace a file that is open")
+    void replacesPreviousSignedApkWithoutExposingPartialApk() throws Exception {
+        File signedApk = new File(workspace, "out/SignApksBuilderTest-signed.apk");
+        assertTrue(signedApk.getParentFile().mkdirs());
+        byte[] previous = "previous signed APK".getBytes(StandardCharsets.UTF_8);
+        Files.write(signedApk.toPath(), previous);
+        List<SignApksCallable.Input> inputs = Arrays.asList(input("SignApksBuilderTest.apk", "out/SignApksBuilderTest-signed.apk"));
+        SigningOptions options = new SigningOptions(false).signatureSchemes(V1Signing.AUTO, true, true, true);
+
+        try (InputStream reader = Files.newInputStream(signedApk.toPath())) {
+            new SignApksCallable(inputs, signingKey, options, 1, StreamTaskListener.fromStdout()).invoke(workspace, null);
+
+            assertThat(reader.readAllBytes(), equalTo(previous));
+        }
+
+        assertTrue(new VerifyApkCallable(StreamTaskListener.fromStdout()).invoke(signedApk, null).isVerified);
+        assertThat(signedApk.getParentFile().list(), arrayContainingInAnyOrder("SignApksBuilderTest-signed.apk", "SignApksBuilderTest-signed.apk.idsig"));
+    }
+
+    @Test
+    void signsTheSameApkInEveryIoMode() throws Exception {
+        for (ApkIoMode mode : ApkIoMode.values()) {
+            List<SignApksCallable.Input> inputs = Arrays.asList(input("SignApksBuilderTest.apk", mode + "/SignApksBuilderTest-signed.apk"));
+            SigningOptions options = new SigningOptions(true).ioMode(mode);
+
+            new SignApksCallable(inputs, signingKey, options, 1, StreamTaskListener.fromStdout()).invoke(workspace, null);
+        }
+
+        File expected = new File(workspace, ApkIoMode.RANDOM_ACCESS_FILE + "/SignApksBuilderTest-signed.apk");
+        assertTrue(new VerifyApkCallable(StreamTaskListener.fromStdout()).invoke(expected, null).isVerified);
+        for (ApkIoMode mode : ApkIoMode.values()) {
+            File signedApk = new File(workspace, mode + "/SignApksBuilderTest-signed.apk");
+            assertThat(mode.toString(), Files.mismatch(expected.toPath(), signedApk.toPath()), equalTo(-1L));
+        }
+    }
+
+    @Test
+    void skipsV1SigningWhenMinSdkVersionDoesNotNeedIt() throws Exception {
+        List<SignApksCallable.Input> inputs = Arrays.asList(input("SignApksBuilderTest.apk", "SignApksBuilderTest-signed.apk"));
+
+        new SignApksCallable(inputs, signingKey, new SigningOptions(false).sdkVersions(24, 0), 1, StreamTaskListener.fromStdout())
+            .invoke(workspace, null);
+
+        try (ZipFile signedApk = new ZipFile(new File(workspace, "SignApksBuilderTest-signed.apk"))) {
+            assertThat(signedApk.stream().map(ZipEntry::getName).filter(name -> name.endsWith(".SF")).count(), equalTo(0L));
+        }
+    }
+
+    @Test
+    void failsWhenV1SigningIsDisabledForApkThatNeedsIt() {
+        List<SignApksCallable.Input> inputs = Arrays.asList(input("SignApksBuilderTest.apk", "SignApksBuilderTest-signed.apk"));
+        SigningOptions options = new SigningOptions(false).signatureSchemes(V1Signing.DISABLED, true, true, false);
+
+        AbortException e = assertThrows(AbortException.class,
+            () -> new SignApksCallable(inputs, signingKey, options, 1, StreamTaskListener.fromStdout()).invoke(workspace, null));
+
+        assertThat(e.getMessage(), containsString("v1 signing is disabled"));
+    }
+
+    @Test
+    void failsWhenAutoV1SigningLeavesNoSchemeForMinSdkVersion() {
+        List<SignApksCallable.Input> inputs = Arrays.asList(input("SignApksBuilderTest.apk", "SignApksBuilderTest-signed.apk"));
+        SigningOptions options = new SigningOptions(false).signatureSchemes(V1Signing.AUTO, false, false, false).sdkVersions(24, 0);
+        assertDoesNotThrow(options::validate);
+
+        AbortException e = assertThrows(AbortException.class,
+            () -> new SignApksCallable(inputs, signingKey, options, 1, StreamTaskListener.fromStdout()).invoke(workspace, null));
+
+        assertThat(e.getMessage(), containsString("no signature scheme enabled for minimum SDK version 24"));
+    }
+
+    @Test
+    void writesV4SignatureNextToSignedApk() throws Exception {
+        List<SignApksCallable.Input> inputs = Arrays.asList(input("SignApksBuilderTest.apk", "out/SignApksBuilderTest-signed.apk"));
+        SigningOptions options = new SigningOptions(false).signatureSchemes(V1Signing.AUTO, true, true, true);
+
+        List<SignApksCallable.SignedApk> signedApks = new SignApksCallable(inputs, signingKey, options, 1, StreamTaskListener.fromStdout()).invoke(workspace, null);
+
+        assertThat(new File(workspace, "out/SignApksBuilderTest-signed.apk.idsig").length(), greaterThan(0L));
+        assertThat(signedApks.get(0).v4SignatureName, equalTo("SignApksBuilderTest-signed.apk.idsig"));
+        assertThat(signedApks.get(0).v4SignaturePath, equalTo("out/SignApksBuilderTest-signed.apk.idsig"));
+    }
+
+    @Test
+    void failsWhenAlignedApkDoesNotExist() {
+        List<SignApksCallable.Input> inputs = Arrays.asList(
+            input("SignApksBuilderTest.apk", "SignApksBuilderTest-signed.apk"),
+            input("missing.apk", "missing-signed.apk"));
+
+        AbortException e = assertThrows(AbortException.class, () -> callable(inputs, 1).invoke(workspace, null));
+
+        assertThat(e.getMessage(), equalTo("aligned APK does not exist: missing.apk"));
+    }
+
+    @Test
+    void closesItsKeySessionWhenItReturns() throws Exception {
+        int openSessions = SigningKeySessions.openSessionCount();
+
+        callable(Arrays.asList(input("SignApksBuilderTest.apk", "SignApksBuilderTest-signed.apk")), 1).invoke(workspace, null);
+
+        assertThat(SigningKeySessions.openSessionCount(), equalTo(openSessions));
+
+        List<SignApksCallable.Input> inputs = Arrays.asList(input("missing.apk", "missing-signed.apk"));
+        assertThrows(AbortException.class, () -> callable(inputs, 1).invoke(workspace, null));
+
+        assertThat(SigningKeySessions.openSessionCount(), equalTo(openSessions));
+    }
+
+    @Test
+    void failsWhenKeySessionIsClosed() {
+        String keySession = signingKey.open();
+        SigningKeySessions.close(keySession);
+        SignApksBuilder.SignApkCallable signApk = new SignApksBuilder.SignApkCallable(
+            keySession, new File(workspace, "SignApksBuilderTest-signed.apk").getPath(), new SigningOptions(false), StreamTaskListener.fromStdout());
+
+        AbortException e = assertThrows(AbortException.class, () -> signApk.invoke(new File(workspace, "SignApksBuilderTest.apk"), null));
+
+        assertThat(e.getMessage(), containsString(keySession));
+    }
+
+    @Test
+    void storesSignedApksInCacheForLookup() throws Exception {
+        File cacheDir = new File(tempDir, "cache");
+        String settingsKey = "test-settings";
+        SignApksCallable.Input unkeyed = input("SignApksBuilderTest.apk", "out/SignApksBuilderTest-signed.apk");
+        String key = SignedApkCache.keyFor(new File(unkeyed.unsignedApk), settingsKey);
+        SignApksCallable.Input keyed = new SignApksCallable.Input(unkeyed.unsignedApk, unkeyed.alignedApk, unkeyed.signedApk, null, key);
+
+        new SignApksCallable(Arrays.asList(keyed), signingKey, new SigningOptions(false), 1, cacheDir.getPath(), StreamTaskListener.fromStdout()).invoke(workspace, null);
+        File signedApk = new File(keyed.signedApk);
+        long signedLength = signedApk.length();
+        assertTrue(signedApk.delete());
+
+        SignedApkCache.Lookup.Result lookup = new SignedApkCache.Lookup(cacheDir.getPath(), settingsKey, Arrays.asList(unkeyed), false, StreamTaskListener.fromStdout())
+            .invoke(workspace, null);
+
+        assertThat(lookup.keys, equalTo(Arrays.asList(key)));
+        assertThat(lookup.hits.get(0).signedApkPath, equalTo("out/SignApksBuilderTest-signed.apk"));
+        assertThat(signedApk.length(), equalTo(signedLength));
+        assertTrue(new VerifyApkCallable(StreamTaskListener.fromStdout()).invoke(signedApk, null).isVerified);
+
+        lookup = new SignedApkCache.Lookup(cacheDir.getPath(), "other-settings", Arrays.asList(unkeyed), false, StreamTaskListener.fromStdout())
+            .invoke(workspace, null);
+
+        assertThat(lookup.hits.get(0), nullValue());
+    }
+
+    @Test
+    void signedApkCacheEvictsLeastRecentlyUsedApks() throws Exception {
+        File cacheDir = new File(tempDir, "cache");
+        File apk = new File(workspace, "SignApksBuilderTest.apk");
+        SignedApkCache cache = new SignedApkCache(cacheDir, apk.length() * 3 / 2);
+
+        cache.store("old", apk);
+        assertTrue(new File(cacheDir, "old.apk.used").setLastModified(System.currentTimeMillis() - 60000));
+        cache.store("new", apk);
+
+        assertThat(new File(cacheDir, "old.apk").exists(), equalTo(false));
+        assertThat(new File(cacheDir, "old.apk.used").exists(), equalTo(false));
+        assertThat(new File(cacheDir, "new.apk").exists(), equalTo(true));
+        assertThat(cache.materialize("old", new File(workspace, "old-signed.apk")), equalTo(false));
+        assertThat(cache.materialize("new", new File(workspace, "new-signed.apk")), equalTo(true));
+        assertThat(new File(workspace, "new-signed.apk").length(), equalTo(apk.length()));
+    }
+
+    @Test
+    void signedApkCacheDoesNotTouchTheApksItLinksTo() throws Exception {
+        File cacheDir = new File(tempDir, "cache");
+        File signedApk = new File(workspace, "SignApksBuilderTest.apk");
+        long lastModified = (System.currentTimeMillis() - 60000) / 1000 * 1000;
+        assertTrue(signedApk.setLastModified(lastModified));
+        SignedApkCache cache = new SignedApkCache(cacheDir);
+
+        cache.store("apk", signedApk);
+        File materialized = new File(workspace, "materialized.apk");
+        assertThat(cache.materialize("apk", materialized), equalTo(true));
+
+        assertThat(signedApk.lastModified(), equalTo(lastModified));
+        assertThat(materialized.lastModified(), equalTo(lastModified));
+        assertThat(new File(cacheDir, "apk.apk.used").lastModified(), greaterThan(lastModified));
+    }
+
+    @Test
+    void signedApkCacheStoresAndEvictsV4SignaturesWithSignedApks() throws Exception {
+        File cacheDir = new File(tempDir, "cache");
+        File apk = new File(workspace, "SignApksBuilderTest.apk");
+        File v4Signature = new File(workspace, "SignApksBuilderTest.apk.idsig");
+        Files.write(v4Signature.toPath(), new byte[] { 1, 2, 3 });
+        new SignedApkCache(new File(tempDir, "other-cache")).store("without-v4", apk);
+        assertThat(new SignedApkCache(new File(tempDir, "other-cache")).materialize("without-v4",
+            new File(workspace, "without-v4.apk"), new File(workspace, "without-v4.apk.idsig")), equalTo(false));
+        SignedApkCache cache = new SignedApkCache(cacheDir, apk.length() * 3 / 2);
+
+        cache.store("old", apk, v4Signature);
+        assertThat(new File(cacheDir, "old.apk.idsig").exists(), equalTo(true));
+        assertTrue(new File(cacheDir, "old.apk.used").setLastModified(System.currentTimeMillis() - 60000));
+        cache.store("new", apk, v4Signature);
+
+        assertThat(new File(cacheDir, "old.apk").exists(), equalTo(false));
+        assertThat(new File(cacheDir, "old.apk.idsig").exists(), equalTo(false));
+        File materialized = new File(workspace, "new/new-signed.apk.idsig");
+        assertThat(cache.materialize("new", new File(workspace, "new/new-signed.apk"), materialized), equalTo(true));
+        assertThat(Files.readAllBytes(materialized.toPath()), equalTo(new byte[] { 1, 2, 3 }));
+    }
+}
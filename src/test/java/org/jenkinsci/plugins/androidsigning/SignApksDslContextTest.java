@@ -39,6 +39,14 @@ class SignApksDslContextTest {
                         archiveUnsignedApks true
                         androidHome '/fake/android-sdk'
                         skipZipalign true
+                        parallelSigning true
+                        parallelSigningThreads 6
+                        digestThreads 2
+                        parallelDigestThresholdMb 64
+                        apkIoMode 'memory_mapped'
+                        v1Signing 'disabled'
+                        v4SigningEnabled true
+                        minSdkVersion 26
                     }
             
                     signAndroidApks '**/*-other.apk', {
@@ -47,6 +55,12 @@ class SignApksDslContextTest {
                         archiveSignedApks false
                         archiveUnsignedApks false
                         zipalignPath '/fake/android-sdk/zipalign'
+                        internalZipalign true
+                        searchZipalignWithLauncher true
+                        skipAlignedApks true
+                        nativeLibraryPageAlignmentKb 64
+                        cacheSignedApks true
+                        pipelinedArchiving true
                         signedApkMapping unsignedApkNameDir()
                     }
             
@@ -78,6 +92,15 @@ class SignApksDslContextTest {
         assertTrue(signApks.getArchiveUnsignedApks());
         assertThat(signApks.getAndroidHome(), equalTo("/fake/android-sdk"));
         assertThat(signApks.getZipalignPath(), nullValue());
+        assertTrue(signApks.getParallelSigning());
+        assertThat(signApks.getParallelSigningThreads(), equalTo(6));
+        assertThat(signApks.getDigestThreads(), equalTo(2));
+        assertThat(signApks.getParallelDigestThresholdMb(), equalTo(64));
+        assertThat(signApks.getApkIoMode(), equalTo(ApkIoMode.MEMORY_MAPPED));
+        assertThat(signApks.getV1Signing(), equalTo(V1Signing.DISABLED));
+        assertTrue(signApks.getV2SigningEnabled());
+        assertTrue(signApks.getV4SigningEnabled());
+        assertThat(signApks.getMinSdkVersion(), equalTo(26));
         assertThat(signApks.getSignedApkMapping(), instanceOf(SignedApkMappingStrategy.UnsignedApkSiblingMapping.class));
 
         signApks = (SignApksBuilder) job.getBuilders().get(1);
@@ -90,6 +113,13 @@ class SignApksDslContextTest {
         assertFalse(signApks.getArchiveUnsignedApks());
         assertThat(signApks.getAndroidHome(), nullValue());
         assertThat(signApks.getZipalignPath(), equalTo("/fake/android-sdk/zipalign"));
+        assertFalse(signApks.getParallelSigning());
+        assertTrue(signApks.getInternalZipalign());
+        assertTrue(signApks.getSearchZipalignWithLauncher());
+        assertTrue(signApks.getSkipAlignedApks());
+        assertThat(signApks.getNativeLibraryPageAlignmentKb(), equalTo(64));
+        assertTrue(signApks.getCacheSignedApks());
+        assertTrue(signApks.getPipelinedArchiving());
         assertThat(signApks.getSignedApkMapping(), instanceOf(org.jenkinsci.plugins.androidsigning.SignedApkMappingStrategy.UnsignedApkBuilderDirMapping.class));
 
         signApks = (SignApksBuilder) job.getBuilders().get(2);
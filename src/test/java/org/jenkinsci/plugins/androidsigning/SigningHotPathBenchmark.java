@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
+import com.cloudbees.plugins.credentials.impl.CertificateCredentialsImpl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import hudson.FilePath;
+import hudson.Util;
+
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_ALIAS;
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_STORE_ID;
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_STORE_RESOURCE;
+
+
+/**
+ * Measures the throughput and latency percentiles of the steps that run once per step or once per APK besides
+ * signing itself: getting the signing key from a credential, through {@link SigningKeyCache} and decoding it from
+ * the key store without the cache, naming the signed APK, and matching the APKs to sign in a workspace of
+ * {@link Workspace#workspaceDirs} module directories, each with an unsigned and a debug APK and a few other build
+ * outputs.  {@link SignApkBenchmark} measures signing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningHotPathBenchmark {
+
+    /**
+     * Only the benchmarks that match APKs use this, so only they run for each {@link #workspaceDirs}.
+     */
+    @State(Scope.Benchmark)
+    public static class Workspace {
+
+        private static final String[] GLOBS = { "**/*-unsigned.apk", "**/build/outputs/apk/release/*.apk" };
+
+        @Param({"10", "100", "1000"})
+        public int workspaceDirs;
+
+        private File dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            dir = Files.createTempDirectory(SigningHotPathBenchmark.class.getSimpleName()).toFile();
+            for (int i = 0; i < workspaceDirs; i++) {
+                File module = new File(dir, "module-" + i);
+                for (String output : new String[] {
+                    "build/outputs/apk/release/module-" + i + "-release-unsigned.apk",
+                    "build/outputs/apk/debug/module-" + i + "-debug.apk",
+                    "build/intermediates/classes.dex",
+                    "build/tmp/R.txt",
+                    "src/main/AndroidManifest.xml" }) {
+                    File file = new File(module, output);
+                    Files.createDirectories(file.getParentFile().toPath());
+                    Files.write(file.toPath(), output.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            Util.deleteRecursive(dir);
+        }
+    }
+
+    private StandardCertificateCredentials credentials;
+    private FilePath unsignedApk;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String keyStore;
+        try (InputStream in = getClass().getResourceAsStream(KEY_STORE_RESOURCE)) {
+            keyStore = new String(Base64.getEncoder().encode(in.readAllBytes()), StandardCharsets.UTF_8);
+        }
+        credentials = new CertificateCredentialsImpl(CredentialsScope.GLOBAL, KEY_STORE_ID, "Benchmark Key Store",
+            SignApksBuilderTest.class.getSimpleName(), new CertificateCredentialsImpl.UploadedKeyStoreSource(keyStore));
+        unsignedApk = new FilePath(new File("module-0/build/outputs/apk/release/module-0-release-unsigned.apk"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SigningKeyCache.INSTANCE.invalidateAll();
+    }
+
+    @Benchmark
+    public SigningComponents fromCredentials() throws Exception {
+        return SigningComponents.fromCredentials(credentials, KEY_ALIAS);
+    }
+
+    @Benchmark
+    public SigningComponents readFromKeyStore() throws Exception {
+        return SigningComponents.readFromKeyStore(credentials, KEY_ALIAS);
+    }
+
+    @Benchmark
+    public String unqualifiedNameOfUnsignedApk() {
+        return SignedApkMappingStrategy.unqualifiedNameOfUnsignedApk(unsignedApk);
+    }
+
+    @Benchmark
+    public MatchApksCallable.Result matchApks(Workspace workspace) throws Exception {
+        return new MatchApksCallable(Workspace.GLOBS, SignApksBuilder.BUILDER_DIR + "/**").invoke(workspace.dir, null);
+    }
+}
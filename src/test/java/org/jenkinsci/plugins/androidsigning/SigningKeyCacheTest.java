@@ -0,0 +1,155 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.CredentialsStore;
+import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
+import com.cloudbees.plugins.credentials.domains.Domain;
+import com.cloudbees.plugins.credentials.impl.CertificateCredentialsImpl;
+
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.WithoutJenkins;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_ALIAS;
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_STORE_ID;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@WithJenkins
+class SigningKeyCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private SigningKeyCache.Loader loader(SigningComponents components) {
+        return () -> {
+            loads.incrementAndGet();
+            return components;
+        };
+    }
+
+    private static SigningKeyCache.Key key(String alias) {
+        return new SigningKeyCache.Key("keyStore", "fingerprint", alias);
+    }
+
+    @Test
+    @WithoutJenkins
+    void loadsOnceUntilEntryExpires() throws Exception {
+        SigningKeyCache cache = new SigningKeyCache(4, 100, now::get);
+
+        cache.get(key("a"), loader(null));
+        cache.get(key("a"), loader(null));
+        now.addAndGet(99);
+        cache.get(key("a"), loader(null));
+
+        assertThat(loads.get(), equalTo(1));
+        assertThat(cache.getHitCount(), equalTo(2L));
+        assertThat(cache.getMissCount(), equalTo(1L));
+
+        now.addAndGet(1);
+        cache.get(key("a"), loader(null));
+
+        assertThat(loads.get(), equalTo(2));
+        assertThat(cache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    @WithoutJenkins
+    void evictsLeastRecentlyUsedEntryWhenFull() throws Exception {
+        SigningKeyCache cache = new SigningKeyCache(2, 100, now::get);
+
+        cache.get(key("a"), loader(null));
+        cache.get(key("b"), loader(null));
+        cache.get(key("a"), loader(null));
+        cache.get(key("c"), loader(null));
+
+        assertThat(cache.size(), equalTo(2));
+        assertThat(loads.get(), equalTo(3));
+
+        cache.get(key("a"), loader(null));
+        assertThat(loads.get(), equalTo(3));
+        cache.get(key("b"), loader(null));
+        assertThat(loads.get(), equalTo(4));
+    }
+
+    @Test
+    @WithoutJenkins
+    void doesNotCacheLoadFailures() throws Exception {
+        SigningKeyCache cache = new SigningKeyCache(2, 100, now::get);
+
+        assertThrows(GeneralSecurityException.class, () -> cache.get(key("a"), () -> {
+            throw new GeneralSecurityException("bad password");
+        }));
+        cache.get(key("a"), loader(null));
+
+        assertThat(loads.get(), equalTo(1));
+        assertThat(cache.size(), equalTo(1));
+    }
+
+    @Test
+    void reusesDecodedKeyForTheSameCredentialAndAlias(JenkinsRule testJenkins) throws Exception {
+        TestKeyStore testKeyStore = new TestKeyStore(testJenkins);
+        testKeyStore.addCredentials();
+        SigningKeyCache cache = new SigningKeyCache(4, 100, now::get);
+        StandardCertificateCredentials creds = testKeyStore.credentials;
+
+        assertThat(SigningKeyCache.fingerprintOf(creds), not(nullValue()));
+
+        SigningComponents first = cache.get(creds, KEY_ALIAS, () -> SigningComponents.readFromKeyStore(creds, KEY_ALIAS));
+        SigningComponents second = cache.get(creds, KEY_ALIAS, () -> SigningComponents.readFromKeyStore(creds, KEY_ALIAS));
+        SigningComponents noAlias = cache.get(creds, null, () -> SigningComponents.readFromKeyStore(creds, null));
+
+        assertThat(second, sameInstance(first));
+        assertThat(noAlias, not(sameInstance(first)));
+        assertThat(noAlias.key, equalTo(first.key));
+        assertThat(cache.getHitCount(), equalTo(1L));
+        assertThat(cache.getMissCount(), equalTo(2L));
+
+        testKeyStore.removeCredentials();
+    }
+
+    @Test
+    void invalidatesWhenCredentialIsUpdated(JenkinsRule testJenkins) throws Exception {
+        TestKeyStore testKeyStore = new TestKeyStore(testJenkins);
+        testKeyStore.addCredentials();
+        StandardCertificateCredentials original = testKeyStore.credentials;
+        SigningKeyCache.INSTANCE.invalidateAll();
+
+        SigningComponents first = SigningComponents.fromCredentials(original, KEY_ALIAS);
+        assertThat(SigningComponents.fromCredentials(original, KEY_ALIAS), sameInstance(first));
+        assertThat(SigningKeyCache.INSTANCE.size(), equalTo(1));
+
+        String keyStore;
+        try (InputStream in = getClass().getResourceAsStream("/SignApksBuilderTestMulti.p12")) {
+            keyStore = new String(Base64.getEncoder().encode(in.readAllBytes()), StandardCharsets.UTF_8);
+        }
+        StandardCertificateCredentials updated = new CertificateCredentialsImpl(
+            CredentialsScope.GLOBAL, KEY_STORE_ID, "Updated Test Key Store", SignApksBuilderTest.class.getSimpleName(),
+            new CertificateCredentialsImpl.UploadedKeyStoreSource(keyStore));
+        CredentialsStore store = CredentialsProvider.lookupStores(testJenkins.jenkins).iterator().next();
+        store.updateCredentials(Domain.global(), original, updated);
+
+        assertThat(SigningKeyCache.INSTANCE.size(), equalTo(0));
+        assertThat(SigningKeyCache.fingerprintOf(updated), not(equalTo(SigningKeyCache.fingerprintOf(original))));
+
+        long misses = SigningKeyCache.INSTANCE.getMissCount();
+        assertThat(SigningComponents.fromCredentials(updated, KEY_ALIAS), not(sameInstance(first)));
+        assertThat(SigningKeyCache.INSTANCE.getMissCount(), equalTo(misses + 1));
+
+        testKeyStore.credentials = updated;
+        testKeyStore.removeCredentials();
+    }
+}
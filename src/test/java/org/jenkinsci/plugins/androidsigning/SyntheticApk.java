@@ -0,0 +1,254 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+
+/**
+ * Writes unsigned APKs with a given size, entry count, mix of compressed and uncompressed entries, native library
+ * and {@code resources.arsc} layout, and alignment, for benchmarks and scale tests that need more, or larger, APKs
+ * than the ones in the test resources.  The APK holds the binary manifest of the test APK, so apksig can read its
+ * minimum SDK version, followed by {@code resources.arsc}, the native libraries, and assets to make up the entry
+ * count.  Entry data is pseudo-random from a seed, so the same settings always write the same APK, and streams
+ * through a small buffer, so APKs up to 4 GB and beyond do not need the memory to hold them.
+ */
+class SyntheticApk {
+
+    enum Alignment {
+        /**
+         * The offsets {@link ZipOutputStream} writes the entries at, like an APK from a build that does not align.
+         */
+        NONE,
+        /**
+         * Uncompressed entries aligned to 4 bytes and uncompressed native libraries to pages, as {@code zipalign}
+         * aligns them.
+         */
+        ALIGNED,
+        /**
+         * Aligned, but the data of the first uncompressed entry starts 1 byte after a multiple of 4 bytes.
+         */
+        MISALIGNED
+    }
+
+    static final String MANIFEST_SOURCE_RESOURCE = "/workspace/SignApksBuilderTest-unsigned.apk";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // the extra field apksig and zipalign -P pad entries with: header ID, data size, alignment, zeros
+    private static final short ALIGNMENT_EXTRA_ID = (short) 0xd935;
+    private static final int ALIGNMENT_EXTRA_MIN_SIZE = 6;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int ZIP64_LOCAL_EXTRA_SIZE = 20;
+    // 2020-01-01, in the range of DOS times, so ZipOutputStream adds no extended timestamp extra field
+    private static final long ENTRY_TIME = 1577836800000L;
+
+    private long payloadBytes = 1024 * 1024;
+    private int entryCount = 10;
+    private double compressedFraction = 0.5;
+    private int nativeLibraries = 0;
+    private boolean storedNativeLibraries = true;
+    private boolean storedResources = true;
+    private Alignment alignment = Alignment.NONE;
+    private int pageAlignmentKb = ZipalignTool.DEFAULT_PAGE_ALIGNMENT_KB;
+    private long seed = 0;
+
+    /**
+     * The total uncompressed size of the entries besides the manifest, split evenly among them.
+     */
+    SyntheticApk payloadBytes(long x) {
+        payloadBytes = x;
+        return this;
+    }
+
+    /**
+     * The number of entries besides the manifest, including {@code resources.arsc} and the native libraries.
+     */
+    SyntheticApk entryCount(int x) {
+        entryCount = x;
+        return this;
+    }
+
+    /**
+     * The fraction of assets to compress.  Compressed assets hold data that compresses to about half its size,
+     * uncompressed assets random data, like media files.
+     */
+    SyntheticApk compressedFraction(double x) {
+        compressedFraction = x;
+        return this;
+    }
+
+    SyntheticApk nativeLibraries(int count, boolean stored) {
+        nativeLibraries = count;
+        storedNativeLibraries = stored;
+        return this;
+    }
+
+    /**
+     * Whether to store {@code resources.arsc} uncompressed, which Android 11 requires of apps that target it.
+     */
+    SyntheticApk storedResources(boolean x) {
+        storedResources = x;
+        return this;
+    }
+
+    SyntheticApk alignment(Alignment x) {
+        alignment = x;
+        return this;
+    }
+
+    SyntheticApk pageAlignmentKb(int x) {
+        pageAlignmentKb = x;
+        return this;
+    }
+
+    SyntheticApk seed(long x) {
+        seed = x;
+        return this;
+    }
+
+    File writeTo(File apk) throws IOException {
+        if (entryCount < 1 + nativeLibraries) {
+            throw new IllegalArgumentException(String.format(
+                "%d entries cannot hold resources.arsc and %d native libraries", entryCount, nativeLibraries));
+        }
+        byte[] manifest = testManifest();
+        long entryBytes = payloadBytes / entryCount;
+        int assets = entryCount - 1 - nativeLibraries;
+        int compressedAssets = (int) Math.round(assets * compressedFraction);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        boolean misalign = alignment == Alignment.MISALIGNED;
+
+        try (CountingOutputStream counter = new CountingOutputStream(Files.newOutputStream(apk.toPath()));
+             ZipOutputStream zip = new ZipOutputStream(counter)) {
+            ZipEntry manifestEntry = new ZipEntry("AndroidManifest.xml");
+            manifestEntry.setTime(ENTRY_TIME);
+            zip.putNextEntry(manifestEntry);
+            zip.write(manifest);
+            zip.closeEntry();
+
+            int index = 0;
+            misalign &= !writeEntry(zip, counter, "resources.arsc", storedResources, false,
+                entryBytes + payloadBytes % entryCount, index++, misalign, buffer);
+            for (int i = 0; i < nativeLibraries; i++) {
+                misalign &= !writeEntry(zip, counter, String.format("lib/arm64-v8a/libsynthetic%d.so", i), storedNativeLibraries, false,
+                    entryBytes, index++, misalign, buffer);
+            }
+            for (int i = 0; i < assets; i++) {
+                // spread the compressed assets evenly among the uncompressed ones
+                boolean compressed = (long) (i + 1) * compressedAssets / assets > (long) i * compressedAssets / assets;
+                misalign &= !writeEntry(zip, counter, String.format("assets/%d/asset-%d.bin", i % 100, i), !compressed, compressed,
+                    entryBytes, index++, misalign, buffer);
+            }
+        }
+        if (misalign) {
+            throw new IllegalArgumentException("a misaligned APK needs at least one uncompressed entry");
+        }
+        return apk;
+    }
+
+    /**
+     * @return whether this misaligned the entry
+     */
+    private boolean writeEntry(ZipOutputStream zip, CountingOutputStream counter, String name, boolean stored, boolean compressible,
+        long size, int index, boolean misalign, byte[] buffer) throws IOException {
+
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(ENTRY_TIME);
+        long entrySeed = seed * 31 + index;
+        boolean misaligned = false;
+        if (stored) {
+            CRC32 crc = new CRC32();
+            Random random = new Random(entrySeed);
+            for (long written = 0; written < size; written += buffer.length) {
+                int length = (int) Math.min(buffer.length, size - written);
+                fill(random, buffer, length, compressible);
+                crc.update(buffer, 0, length);
+            }
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(size);
+            entry.setCompressedSize(size);
+            entry.setCrc(crc.getValue());
+            if (alignment != Alignment.NONE) {
+                int entryAlignment = name.endsWith(".so") ? pageAlignmentKb * 1024 : ZipalignTool.ZIP_ALIGNMENT;
+                long dataOffset = counter.count + LOCAL_FILE_HEADER_SIZE + name.getBytes(StandardCharsets.UTF_8).length
+                    + (size >= 0xffffffffL ? ZIP64_LOCAL_EXTRA_SIZE : 0);
+                int padding = (int) ((entryAlignment - (dataOffset + ALIGNMENT_EXTRA_MIN_SIZE) % entryAlignment) % entryAlignment);
+                if (misalign) {
+                    padding += 1;
+                    misaligned = true;
+                }
+                entry.setExtra(alignmentExtra(entryAlignment, ALIGNMENT_EXTRA_MIN_SIZE + padding));
+            }
+        }
+        zip.putNextEntry(entry);
+        Random random = new Random(entrySeed);
+        for (long written = 0; written < size; written += buffer.length) {
+            int length = (int) Math.min(buffer.length, size - written);
+            fill(random, buffer, length, compressible);
+            zip.write(buffer, 0, length);
+        }
+        zip.closeEntry();
+        return misaligned;
+    }
+
+    private static void fill(Random random, byte[] buffer, int length, boolean compressible) {
+        for (int i = 0; i < length; ) {
+            for (long bits = random.nextLong(), n = 0; n < 8 && i < length; n++, bits >>>= 8) {
+                // 16 distinct byte values deflate to about half their size
+                buffer[i++] = compressible ? (byte) ('A' + (bits & 0x0f)) : (byte) bits;
+            }
+        }
+    }
+
+    private static byte[] alignmentExtra(int entryAlignment, int extraSize) {
+        ByteBuffer extra = ByteBuffer.allocate(extraSize).order(ByteOrder.LITTLE_ENDIAN);
+        extra.putShort(ALIGNMENT_EXTRA_ID);
+        extra.putShort((short) (extraSize - 4));
+        extra.putShort((short) entryAlignment);
+        return extra.array();
+    }
+
+    private static byte[] testManifest() throws IOException {
+        try (InputStream in = SyntheticApk.class.getResourceAsStream(MANIFEST_SOURCE_RESOURCE);
+             ZipInputStream source = new ZipInputStream(in)) {
+            for (ZipEntry entry = source.getNextEntry(); entry != null; entry = source.getNextEntry()) {
+                if (entry.getName().equals("AndroidManifest.xml")) {
+                    return source.readAllBytes();
+                }
+            }
+        }
+        throw new IOException("no AndroidManifest.xml in " + MANIFEST_SOURCE_RESOURCE);
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.androidsigning;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import hudson.model.TaskListener;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.jenkinsci.plugins.androidsigning.TestKeyStore.KEY_ALIAS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class SyntheticApkTest {
+
+    private static final int PAGE = ZipalignTool.DEFAULT_PAGE_ALIGNMENT_KB * 1024;
+
+    @TempDir
+    private File dir;
+
+    @Test
+    void writesTheRequestedEntriesAndLayout() throws Exception {
+        File apk = new SyntheticApk().payloadBytes(100_000).entryCount(12).compressedFraction(0.5).nativeLibraries(2, true)
+            .writeTo(new File(dir, "layout.apk"));
+
+        List<String> compressedAssets = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(apk)) {
+            assertThat(zip.size(), equalTo(13));
+            assertThat(zip.getEntry("AndroidManifest.xml").getMethod(), equalTo(ZipEntry.DEFLATED));
+            assertThat(zip.getEntry("resources.arsc").getMethod(), equalTo(ZipEntry.STORED));
+            assertThat(zip.getEntry("lib/arm64-v8a/libsynthetic1.so").getMethod(), equalTo(ZipEntry.STORED));
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.getName().startsWith("assets/") && entry.getMethod() == ZipEntry.DEFLATED) {
+                    compressedAssets.add(entry.getName());
+                    assertTrue(entry.getCompressedSize() < entry.getSize());
+                }
+            }
+        }
+        assertThat(compressedAssets.size(), equalTo(5));
+    }
+
+    @Test
+    void alignsOrMisalignsUncompressedEntries() throws Exception {
+        SyntheticApk synthetic = new SyntheticApk().entryCount(20).nativeLibraries(3, true);
+
+        File aligned = synthetic.alignment(SyntheticApk.Alignment.ALIGNED).writeTo(new File(dir, "aligned.apk"));
+        File misaligned = synthetic.alignment(SyntheticApk.Alignment.MISALIGNED).writeTo(new File(dir, "misaligned.apk"));
+
+        assertThat(ApkAlignment.misalignmentOf(aligned, ZipalignTool.ZIP_ALIGNMENT, PAGE), nullValue());
+        assertThat(ApkAlignment.misalignmentOf(misaligned, ZipalignTool.ZIP_ALIGNMENT, PAGE), containsString("resources.arsc"));
+    }
+
+    @Test
+    void writesTheSameApkForTheSameSettings() throws Exception {
+        SyntheticApk synthetic = new SyntheticApk().payloadBytes(300_000).entryCount(50).seed(7);
+
+        File first = synthetic.writeTo(new File(dir, "first.apk"));
+        File second = synthetic.writeTo(new File(dir, "second.apk"));
+
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    void writesApksThatSignAndVerify() throws Exception {
+        File unsignedApk = new SyntheticApk().payloadBytes(200_000).entryCount(30).nativeLibraries(1, true)
+            .alignment(SyntheticApk.Alignment.ALIGNED).writeTo(new File(dir, "unsigned.apk"));
+        File signedApk = new File(dir, "signed.apk");
+        KeyStore.PrivateKeyEntry signingEntry = TestKeyStore.loadSigningEntry();
+        String keySession = SigningKeySessions.open(signingEntry.getPrivateKey(), signingEntry.getCertificateChain(), KEY_ALIAS);
+        try {
+            SigningOptions options = new SigningOptions(false).pageAlignmentKb(ZipalignTool.DEFAULT_PAGE_ALIGNMENT_KB);
+            new SignApksBuilder.SignApkCallable(keySession, signedApk.getPath(), options, TaskListener.NULL).invoke(unsignedApk, null);
+        }
+        finally {
+            SigningKeySessions.close(keySession);
+        }
+
+        assertTrue(new VerifyApkCallable(TaskListener.NULL).invoke(signedApk, null).isVerified);
+    }
+}
@@ -12,6 +12,7 @@ import org.jvnet.hudson.test.JenkinsRule;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
 import java.util.Base64;
 
 
@@ -21,6 +22,19 @@ public class TestKeyStore {
     public static final String KEY_STORE_ID = SignApksBuilderTest.class.getSimpleName() + ".keyStore";
     public static final String KEY_ALIAS = SignApksBuilderTest.class.getSimpleName();
 
+    /**
+     * Load the main test key entry directly from the test key store resource, for tests and benchmarks that sign
+     * APKs without a Jenkins instance to hold credentials.
+     */
+    static KeyStore.PrivateKeyEntry loadSigningEntry() throws Exception {
+        char[] password = SignApksBuilderTest.class.getSimpleName().toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = SignApksBuilderTest.class.getResourceAsStream(KEY_STORE_RESOURCE)) {
+            keyStore.load(in, password);
+        }
+        return (KeyStore.PrivateKeyEntry) keyStore.getEntry(KEY_ALIAS, new KeyStore.PasswordProtection(password));
+    }
+
     public final JenkinsRule testJenkins;
     public final String resourceName;
     public final String credentialsId;
@@ -29,4 +29,13 @@ class UnsignedApkSiblingMappingTest {
 
         assertThat(outApk, equalTo(workspace.child("app/build/outputs/app-other-signed.apk")));
     }
+
+    @Test
+    void putsV4SignatureNextToSignedApk() {
+        SignedApkMappingStrategy.UnsignedApkSiblingMapping mapping = new SignedApkMappingStrategy.UnsignedApkSiblingMapping();
+        FilePath signedApk = workspace.child("app/build/outputs/app.apk");
+        FilePath v4Signature = mapping.v4SignatureDestinationForSignedApk(signedApk, workspace);
+
+        assertThat(v4Signature, equalTo(workspace.child("app/build/outputs/app.apk.idsig")));
+    }
 }
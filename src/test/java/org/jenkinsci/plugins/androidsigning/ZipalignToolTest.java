@@ -1,6 +1,8 @@
 package org.jenkinsci.plugins.androidsigning;
 
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.io.File;
@@ -15,6 +17,7 @@ import org.junit.jupiter.api.io.TempDir;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Proc;
 import hudson.model.TaskListener;
 import hudson.model.StreamBuildListener;
 import hudson.util.ArgumentListBuilder;
@@ -32,6 +35,18 @@ class ZipalignToolTest {
     @TempDir
     private File tempDir;
 
+    private static class CountingLauncher extends Launcher.LocalLauncher {
+        private int launches = 0;
+        CountingLauncher(TaskListener listener) {
+            super(listener);
+        }
+        @Override
+        public Proc launch(ProcStarter starter) throws IOException {
+            launches++;
+            return super.launch(starter);
+        }
+    }
+
     @BeforeEach
     void beforeEach() throws Exception {
         FilePath tempDirPath = new FilePath(tempDir);
@@ -62,7 +77,7 @@ class ZipalignToolTest {
         Launcher.LocalLauncher launcher = new Launcher.LocalLauncher(taskListener);
 
         envVars.put(ZipalignTool.ENV_ANDROID_HOME, androidHome.getRemote());
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
@@ -76,7 +91,7 @@ class ZipalignToolTest {
         Launcher.LocalLauncher launcher = new Launcher.LocalLauncher(taskListener);
 
         envVars.put(ZipalignTool.ENV_ZIPALIGN_PATH, altZipalign.getRemote());
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(altZipalign.getRemote()));
@@ -99,28 +114,28 @@ class ZipalignToolTest {
 
         String path = String.join(File.pathSeparator, toolsDir.getRemote(), otherTools, otherBin);
         envVars.put(ZipalignTool.ENV_PATH, path);
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, otherTools, toolsDir.getRemote(), otherBin);
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, otherTools, otherBin, toolsDir.getRemote());
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, toolsDir.getRemote());
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
@@ -143,28 +158,28 @@ class ZipalignToolTest {
 
         String path = String.join(File.pathSeparator, toolsBinDir.getRemote(), otherTools, otherBin);
         envVars.put(ZipalignTool.ENV_PATH, path);
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, otherTools, toolsBinDir.getRemote(), otherBin);
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, otherTools, otherBin, toolsBinDir.getRemote());
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, toolsBinDir.getRemote());
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
@@ -184,28 +199,28 @@ class ZipalignToolTest {
 
         String path = String.join(File.pathSeparator, zipalignDir.getRemote(), otherTools, otherBin);
         envVars.put(ZipalignTool.ENV_PATH, path);
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(altZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, otherTools, zipalignDir.getRemote(), otherBin);
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(altZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, otherTools, otherBin, zipalignDir.getRemote());
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(altZipalign.getRemote()));
 
         path = String.join(File.pathSeparator, zipalignDir.getRemote());
         envVars.put(ZipalignTool.ENV_PATH, path);
-        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         cmd = zipalign.commandFor("path-test.apk", "path-test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(altZipalign.getRemote()));
@@ -220,7 +235,7 @@ class ZipalignToolTest {
 
         envVars.put(ZipalignTool.ENV_ANDROID_HOME, androidHomeZipalign.getRemote());
         envVars.put(ZipalignTool.ENV_ZIPALIGN_PATH, altZipalign.getRemote());
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(altZipalign.getRemote()));
@@ -239,7 +254,7 @@ class ZipalignToolTest {
         Launcher.LocalLauncher launcher = new Launcher.LocalLauncher(taskListener);
 
         envVars.put(ZipalignTool.ENV_ANDROID_HOME, androidHome.getRemote());
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(newerZipalign.getRemote()));
@@ -260,7 +275,7 @@ class ZipalignToolTest {
         FilePath explicitAndroidHome = workspace.createTempDir("my-android-home", "");
         androidHome.copyRecursiveTo(explicitAndroidHome);
 
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, explicitAndroidHome.getRemote(), null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, explicitAndroidHome.getRemote(), null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(explicitAndroidHome.getRemote()));
@@ -280,7 +295,7 @@ class ZipalignToolTest {
 
         FilePath explicitZipalign = workspace.createTempDir("my-zipalign", "").child("zipalign");
         explicitZipalign.write("# fake zipalign", "utf-8");
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, explicitZipalign.getRemote());
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, explicitZipalign.getRemote(), false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(explicitZipalign.getRemote()));
@@ -304,7 +319,7 @@ class ZipalignToolTest {
         FilePath explicitZipalign = workspace.createTempDir("my-zipalign", "").child("zipalign");
         explicitZipalign.write("# fake zipalign", "utf-8");
 
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, explicitAndroidHome.getRemote(), explicitZipalign.getRemote());
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, explicitAndroidHome.getRemote(), explicitZipalign.getRemote(), false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(explicitZipalign.getRemote()));
@@ -325,7 +340,7 @@ class ZipalignToolTest {
         Launcher.LocalLauncher launcher = new Launcher.LocalLauncher(taskListener);
 
         envVars.put(ZipalignTool.ENV_ANDROID_HOME, winAndroidHome.getRemote());
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(winAndroidHomeZipalign.getRemote()));
@@ -344,7 +359,7 @@ class ZipalignToolTest {
         Launcher.LocalLauncher launcher = new Launcher.LocalLauncher(taskListener);
 
         envVars.put(ZipalignTool.ENV_ZIPALIGN_PATH, unsuffixedZipalign.getRemote());
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(suffixedZipalign.getRemote()));
@@ -361,7 +376,7 @@ class ZipalignToolTest {
         TaskListener taskListener = new StreamBuildListener(bytes, Charset.defaultCharset());
         Launcher.LocalLauncher launcher = new Launcher.LocalLauncher(taskListener);
 
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, winAndroidHome.getRemote(), null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, winAndroidHome.getRemote(), null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(winAndroidHomeZipalign.getRemote()));
@@ -379,7 +394,7 @@ class ZipalignToolTest {
         TaskListener taskListener = new StreamBuildListener(bytes, Charset.defaultCharset());
         Launcher.LocalLauncher launcher = new Launcher.LocalLauncher(taskListener);
 
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, unsuffixedZipalign.getRemote());
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, unsuffixedZipalign.getRemote(), false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(suffixedZipalign.getRemote()));
@@ -393,14 +408,14 @@ class ZipalignToolTest {
         Launcher.LocalLauncher launcher = new Launcher.LocalLauncher(taskListener);
 
         env.put("ALT_ZIPALIGN", altZipalign.getRemote());
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, env, workspace, System.out, null, "${ALT_ZIPALIGN}");
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, env, workspace, System.out, null, "${ALT_ZIPALIGN}", false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(altZipalign.getRemote()));
 
         env.clear();
         env.put("ALT_ANDROID_HOME", androidHome.getRemote());
-        zipalign = new ZipalignTool(launcher, bytes, env, workspace, System.out, "${ALT_ANDROID_HOME}", null);
+        zipalign = new ZipalignTool(launcher, bytes, env, workspace, System.out, "${ALT_ANDROID_HOME}", null, false);
         cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
@@ -417,9 +432,39 @@ class ZipalignToolTest {
 
         env.put("PATH", winAndroidHome.getRemote());
 
-        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, env, workspace, System.out, null, null);
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, env, workspace, System.out, null, null, false);
         ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
 
         assertThat(cmd.toString(), startsWith(winAndroidHome.getRemote()));
     }
+
+    @Test
+    void searchesOnAgentWithoutLaunchingProcesses() throws Exception {
+        EnvVars envVars = new EnvVars();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TaskListener taskListener = new StreamBuildListener(bytes, Charset.defaultCharset());
+        CountingLauncher launcher = new CountingLauncher(taskListener);
+
+        envVars.put(ZipalignTool.ENV_PATH, workspace.getRemote() + File.pathSeparator + altZipalign.getParent().getRemote());
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, false);
+        ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
+
+        assertThat(cmd.toString(), startsWith(altZipalign.getRemote()));
+        assertThat(launcher.launches, equalTo(0));
+    }
+
+    @Test
+    void searchesWithLauncherWhenOptedIn() throws Exception {
+        EnvVars envVars = new EnvVars();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TaskListener taskListener = new StreamBuildListener(bytes, Charset.defaultCharset());
+        CountingLauncher launcher = new CountingLauncher(taskListener);
+
+        envVars.put(ZipalignTool.ENV_ANDROID_HOME, androidHome.getRemote());
+        ZipalignTool zipalign = new ZipalignTool(launcher, bytes, envVars, workspace, System.out, null, null, true);
+        ArgumentListBuilder cmd = zipalign.commandFor("test.apk", "test-aligned.apk");
+
+        assertThat(cmd.toString(), startsWith(androidHomeZipalign.getRemote()));
+        assertThat(launcher.launches, greaterThan(0));
+    }
 }
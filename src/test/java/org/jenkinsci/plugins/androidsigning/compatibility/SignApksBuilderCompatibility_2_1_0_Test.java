@@ -70,4 +70,22 @@ class SignApksBuilderCompatibility_2_1_0_Test {
         assertThat(builder.getSignedApkMapping(), instanceOf(SignedApkMappingStrategy.UnsignedApkBuilderDirMapping.class));
     }
 
+    @Test
+    @LocalData
+    void usesDefaultParallelDigestThresholdFor_v2_1_0_builders() {
+
+        FreeStyleProject job = (FreeStyleProject) testJenkins.jenkins.getItem(getClass().getSimpleName());
+        DescribableList<Builder,?> builders = job.getBuildersList();
+
+        assertThat(builders.size(), equalTo(2));
+
+        SignApksBuilder builder = (SignApksBuilder) builders.get(0);
+        assertThat(builder.getParallelDigestThresholdMb(), equalTo(32));
+        assertThat(builder.getNativeLibraryPageAlignmentKb(), equalTo(16));
+
+        builder = (SignApksBuilder) builders.get(1);
+        assertThat(builder.getParallelDigestThresholdMb(), equalTo(32));
+        assertThat(builder.getNativeLibraryPageAlignmentKb(), equalTo(16));
+    }
+
 }